@@ -3,6 +3,7 @@ package com.avangrid.gui.avangrid_backend.controller;
 
 
 
+import com.avangrid.gui.avangrid_backend.model.ExportJobStatus;
 import com.avangrid.gui.avangrid_backend.model.Recording;
 import com.avangrid.gui.avangrid_backend.model.RecordingRequest;
 import com.avangrid.gui.avangrid_backend.model.VpiSearchRequest;
@@ -10,9 +11,10 @@ import com.avangrid.gui.avangrid_backend.repository.RecordingsRepo;
 import com.avangrid.gui.avangrid_backend.model.VpiSearchResponse;
 
 import com.avangrid.gui.avangrid_backend.service.VpiRecordingService;
-import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
 import java.util.List;
@@ -43,9 +45,11 @@ public class MainController {
     }
 
     @PostMapping("/recording")
-    public ResponseEntity<ByteArrayResource> getRecording(
-            @RequestBody RecordingRequest request) {
-        return service.getRecordingAsMp3(request);
+    public ResponseEntity<StreamingResponseBody> getRecording(
+            @RequestBody RecordingRequest request,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range) {
+        return service.getRecordingAsMp3(request, accept, range);
     }
 
     @PostMapping("/recording-metadata")
@@ -54,11 +58,28 @@ public class MainController {
     }
 
     @PostMapping("/download-recordings")
-    public ResponseEntity<byte[]> downloadRecordings(
+    public ResponseEntity<StreamingResponseBody> downloadRecordings(
             @RequestBody List<RecordingRequest> requests) throws IOException {
         return service.downloadZip(requests);
     }
 
+    @PostMapping("/export-jobs")
+    public ResponseEntity<ExportJobStatus> submitExportJob(@RequestBody List<RecordingRequest> requests) {
+        return ResponseEntity.accepted().body(service.submitExportJob(requests));
+    }
+
+    @GetMapping("/export-jobs/{jobId}")
+    public ExportJobStatus getExportJob(@PathVariable String jobId) {
+        return service.getExportJobStatus(jobId);
+    }
+
+    @GetMapping("/export-jobs/{jobId}/download")
+    public ResponseEntity<StreamingResponseBody> downloadExportJob(
+            @PathVariable String jobId,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range) {
+        return service.downloadExportJob(jobId, range);
+    }
+
 
 
 
@@ -1,17 +1,26 @@
 package com.avangrid.gui.avangrid_backend.controller;
 
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.core.io.ByteArrayResource;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.avangrid.gui.avangrid_backend.service.VpiService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import reactor.core.publisher.Mono;
 
 
 
@@ -21,6 +30,12 @@ public class VpiController {
     
     @Autowired
     private VpiService vpiService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${vpi.stream.timeout-ms:1800000}")
+    private long streamTimeoutMs;
     
     @GetMapping("/metadata")
     public ResponseEntity<Map<String, Object>> getMetadataInRange(
@@ -29,17 +44,76 @@ public class VpiController {
             @RequestParam("opco") String opco,
             @RequestParam(value = "page_number", defaultValue = "1") int pageNumber,
             @RequestParam(value = "page_size", defaultValue = "50") int pageSize,
-            @RequestParam(value = "session_id", required = false) String sessionId) {
+            @RequestParam(value = "session_id", required = false) String sessionId,
+            @RequestParam(value = "sort_by", required = false) String sortBy,
+            @RequestParam(value = "order", required = false) String order) {
         
         System.out.println("Running Vpi Metadata");
         
         Map<String, Object> response = vpiService.getMetadataInRange(
-            fromDate, toDate, opco, pageNumber, pageSize, sessionId);
+            fromDate, toDate, opco, pageNumber, pageSize, sessionId, sortBy, order);
         
         System.out.println("Completed Vpi Metadata");
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping("/reactive/metadata")
+    public Mono<Map<String, Object>> getMetadataInRangeReactive(
+            @RequestParam("from_date") String fromDate,
+            @RequestParam("to_date") String toDate,
+            @RequestParam("opco") String opco,
+            @RequestParam(value = "page_number", defaultValue = "1") int pageNumber,
+            @RequestParam(value = "page_size", defaultValue = "50") int pageSize,
+            @RequestParam(value = "session_id", required = false) String sessionId,
+            @RequestParam(value = "sort_by", required = false) String sortBy,
+            @RequestParam(value = "order", required = false) String order) {
+        
+        return vpiService.getMetadataInRangeReactive(fromDate, toDate, opco, pageNumber, pageSize, sessionId,
+                sortBy, order);
+    }
+
+    @GetMapping(value = "/metadata/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamMetadataNdjson(
+            @RequestParam("from_date") String fromDate,
+            @RequestParam("to_date") String toDate,
+            @RequestParam("opco") String opco) {
+        
+        vpiService.validateRangeRequest(fromDate, toDate, opco);
+        
+        StreamingResponseBody body = out -> vpiService.streamMetadataInRange(fromDate, toDate, opco, (event, data) -> {
+            Map<String, Object> line = new LinkedHashMap<>();
+            line.put("event", event);
+            line.put("data", data);
+            out.write(objectMapper.writeValueAsBytes(line));
+            out.write('\n');
+            if (!"record".equals(event)) {
+                out.flush();
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    @GetMapping(value = "/metadata/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamMetadataSse(
+            @RequestParam("from_date") String fromDate,
+            @RequestParam("to_date") String toDate,
+            @RequestParam("opco") String opco) {
+        
+        vpiService.validateRangeRequest(fromDate, toDate, opco);
+        
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        Thread.ofVirtual().name("vpi-sse-scan").start(() -> {
+            try {
+                vpiService.streamMetadataInRange(fromDate, toDate, opco, (event, data) ->
+                        emitter.send(SseEmitter.event().name(event).data(data, MediaType.APPLICATION_JSON)));
+                emitter.complete();
+            } catch (Exception e) {
+                emitter.completeWithError(e);
+            }
+        });
+        return emitter;
+    }
+
     @GetMapping("/filter")
     public ResponseEntity<Map<String, Object>> getFilteredMetadata(
              @RequestParam String sessionId,
@@ -49,12 +123,14 @@ public class VpiController {
             @RequestParam(required = false) List<String> AniAliDigits,
             @RequestParam(required = false) List<String> Name,
             @RequestParam(defaultValue = "1") int pageNumber,
-            @RequestParam(defaultValue = "10") int pageSize){
+            @RequestParam(defaultValue = "10") int pageSize,
+            @RequestParam(value = "sort_by", required = false) String sortBy,
+            @RequestParam(value = "order", required = false) String order){
         
         System.out.println("Running Vpi Filtered Metadata");
         
         Map<String, Object> response = vpiService.getFilteredMetadata(sessionId, 
-            extensionNum, objectID, channelNum, AniAliDigits, Name, pageNumber, pageSize);
+            extensionNum, objectID, channelNum, AniAliDigits, Name, pageNumber, pageSize, sortBy, order);
         
         System.out.println("Completed Vpi Filtered Metadata");
         return ResponseEntity.ok(response);
@@ -68,12 +144,14 @@ public class VpiController {
     }
 
     @GetMapping("/recording")
-    public ResponseEntity<ByteArrayResource> getRecording(
+    public ResponseEntity<StreamingResponseBody> getRecording(
             @RequestParam String filename,
             @RequestParam String date,
-            @RequestParam String opco) {
+            @RequestParam String opco,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range) {
 
-        return vpiService.getRecordingAsMp3(filename, date, opco);
+        return vpiService.getRecordingAsMp3(filename, date, opco, accept, range);
     }
 
     @GetMapping("/debug")
@@ -0,0 +1,7 @@
+package com.avangrid.gui.avangrid_backend.exception;
+
+public class ExportNotReadyException extends RuntimeException {
+    public ExportNotReadyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.avangrid.gui.avangrid_backend.exception;
+
+public class ExportQueueFullException extends RuntimeException {
+    public ExportQueueFullException(String message) {
+        super(message);
+    }
+}
@@ -1,6 +1,7 @@
 package com.avangrid.gui.avangrid_backend.exception;
 
 import com.avangrid.gui.avangrid_backend.model.ErrorResponse;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -31,6 +32,24 @@ public class GlobalExceptionHandler {
         return buildErrorResponse(ex.getMessage(),  HttpStatus.INTERNAL_SERVER_ERROR);
     }
 
+    @ExceptionHandler(TranscodeBusyException.class)
+    public ResponseEntity<ErrorResponse> handleTranscodeBusy(TranscodeBusyException ex) {
+        ResponseEntity<ErrorResponse> response = buildErrorResponse(ex.getMessage(),  HttpStatus.TOO_MANY_REQUESTS);
+        return ResponseEntity.status(response.getStatusCode())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(response.getBody());
+    }
+
+    @ExceptionHandler(ExportQueueFullException.class)
+    public ResponseEntity<ErrorResponse> handleExportQueueFull(ExportQueueFullException ex) {
+        return buildErrorResponse(ex.getMessage(),  HttpStatus.TOO_MANY_REQUESTS);
+    }
+
+    @ExceptionHandler(ExportNotReadyException.class)
+    public ResponseEntity<ErrorResponse> handleExportNotReady(ExportNotReadyException ex) {
+        return buildErrorResponse(ex.getMessage(),  HttpStatus.CONFLICT);
+    }
+
     @ExceptionHandler(Exception.class) // fallback
     public ResponseEntity<ErrorResponse> handleGeneral(Exception ex) {
         return buildErrorResponse("Unexpected error: " + ex.getMessage(),
@@ -0,0 +1,14 @@
+package com.avangrid.gui.avangrid_backend.exception;
+
+public class TranscodeBusyException extends RuntimeException{
+    private final int retryAfterSeconds;
+
+    public TranscodeBusyException(String message, int retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
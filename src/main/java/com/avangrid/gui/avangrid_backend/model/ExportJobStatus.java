@@ -0,0 +1,25 @@
+package com.avangrid.gui.avangrid_backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ExportJobStatus {
+    private String jobId;
+    private String state;
+    private int totalRecordings;
+    private int processedRecordings;
+    private int failedRecordings;
+    private long archiveBytes;
+    private LocalDateTime createdAt;
+    private LocalDateTime completedAt;
+    private LocalDateTime expiresAt;
+    private String error;
+}
@@ -1,49 +1,110 @@
 package com.avangrid.gui.avangrid_backend.model;
 
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
-import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
+/**
+ * One VPI {@code <Media>} entry. Field names and values are kept in two parallel
+ * arrays instead of a map, and {@code startTime} is parsed once at ingestion
+ * into {@link #getStartEpochSecond()} (wall-clock time encoded as UTC).
+ */
 public class MetadataRecord {
-    @JsonProperty("startTime")
-    private String startTime;
-    
-    @JsonProperty("endTime")
-    private String endTime;
-    
-    private Map<String, Object> additionalProperties;
-    
-    public MetadataRecord() {}
-    
-    public MetadataRecord(String startTime, String endTime, Map<String, Object> additionalProperties) {
-        this.startTime = startTime;
-        this.endTime = endTime;
-        this.additionalProperties = additionalProperties;
-    }
-    
-    // Getters and Setters
-    public String getStartTime() {
-        return startTime;
+
+    /** Marker for records whose {@code startTime} is missing or unparseable. */
+    public static final long NO_START_TIME = Long.MIN_VALUE;
+
+    /** Orders records by start time; records without a parseable start time sort last. */
+    public static final Comparator<MetadataRecord> BY_START_TIME = Comparator.comparingLong(MetadataRecord::getStartSortKey);
+
+    /**
+     * Starts a value holding a nested element as JSON, which {@link #outputValue}
+     * turns back into a map or list. NUL cannot occur in XML text, so no plain
+     * value starts with it.
+     */
+    public static final char NESTED_VALUE_PREFIX = '\0';
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final String[] names;
+    private final String[] values;
+    private final long startEpochSecond;
+
+    public MetadataRecord(String[] names, String[] values, long startEpochSecond) {
+        this.names = names;
+        this.values = values;
+        this.startEpochSecond = startEpochSecond;
     }
-    
-    public void setStartTime(String startTime) {
-        this.startTime = startTime;
+
+    public String get(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return values[i];
+            }
+        }
+        return null;
+    }
+
+    public String getOrDefault(String name, String defaultValue) {
+        String value = get(name);
+        return value != null ? value : defaultValue;
     }
-    
+
+    public String getStartTime() {
+        return get("startTime");
+    }
+
     public String getEndTime() {
-        return endTime;
+        return get("endTime");
     }
-    
-    public void setEndTime(String endTime) {
-        this.endTime = endTime;
+
+    public long getStartEpochSecond() {
+        return startEpochSecond;
     }
-    
-    public Map<String, Object> getAdditionalProperties() {
-        return additionalProperties;
+
+    public boolean hasStartTime() {
+        return startEpochSecond != NO_START_TIME;
     }
-    
-    public void setAdditionalProperties(Map<String, Object> additionalProperties) {
-        this.additionalProperties = additionalProperties;
+
+    /** Start time in epoch seconds, or {@link Long#MAX_VALUE} when there is none, so such records sort last. */
+    public long getStartSortKey() {
+        return hasStartTime() ? startEpochSecond : Long.MAX_VALUE;
+    }
+
+    public int getFieldCount() {
+        return names.length;
+    }
+
+    public String getFieldName(int index) {
+        return names[index];
+    }
+
+    public String getFieldValue(int index) {
+        return values[index];
     }
-}
 
+    @JsonValue
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>(names.length * 2);
+        for (int i = 0; i < names.length; i++) {
+            map.put(names[i], outputValue(values[i]));
+        }
+        return map;
+    }
+
+    /** A stored field value as the API returns it: plain text, or the map or list of a nested element. */
+    public static Object outputValue(String value) {
+        if (value == null || value.isEmpty() || value.charAt(0) != NESTED_VALUE_PREFIX) {
+            return value;
+        }
+        try {
+            return JSON.readValue(value.substring(1), Object.class);
+        } catch (JsonProcessingException e) {
+            return value.substring(1);
+        }
+    }
+}
@@ -6,4 +6,8 @@ import lombok.Data;
 public class PaginationRequest {
     private int pageNumber;
     private int pageSize;
+    // keyset paging: "" for the first page, then the previous response's nextContinuationToken
+    private String continuationToken;
+    // keyset paging only: also count all matching rows
+    private boolean exactCount;
 }
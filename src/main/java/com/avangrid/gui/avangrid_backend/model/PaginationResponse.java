@@ -8,4 +8,6 @@ public class PaginationResponse {
     private int pageSize;
     private long totalRecords;
     private int totalPages;
+    // keyset paging: null on the last page
+    private String nextContinuationToken;
 }
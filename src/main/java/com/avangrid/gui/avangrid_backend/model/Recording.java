@@ -11,7 +11,10 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "recordings")
+@Table(name = "recordings", indexes = {
+        // keyset paging of /fetch-metadata seeks on this pair
+        @Index(name = "idx_recordings_date_added_file_name", columnList = "date_added DESC, file_name DESC")
+})
 public class Recording {
 
     @Id
@@ -0,0 +1,21 @@
+package com.avangrid.gui.avangrid_backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * A day of a VPI range scan that could not be read completely, either because
+ * the day listing failed or because one or more XML blobs could not be fetched.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class VpiScanFailure {
+    private LocalDate date;
+    private String prefix;
+    private int failedBlobs;
+    private String message;
+}
@@ -0,0 +1,16 @@
+package com.avangrid.gui.avangrid_backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class VpiScanResult {
+    private List<MetadataRecord> records;
+    private List<VpiScanFailure> failures;
+    private boolean truncated;
+}
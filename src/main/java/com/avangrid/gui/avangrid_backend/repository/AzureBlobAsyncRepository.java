@@ -0,0 +1,85 @@
+package com.avangrid.gui.avangrid_backend.repository;
+
+import com.avangrid.gui.avangrid_backend.exception.BlobAccessException;
+import com.azure.core.util.BinaryData;
+import com.azure.identity.ClientSecretCredential;
+import com.azure.identity.ClientSecretCredentialBuilder;
+import com.azure.storage.blob.BlobContainerAsyncClient;
+import com.azure.storage.blob.BlobServiceAsyncClient;
+import com.azure.storage.blob.BlobServiceClientBuilder;
+import com.azure.storage.blob.models.BlobItem;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Non-blocking counterpart of {@link AzureBlobRepository} for the reactive VPI
+ * path. Listings share the same {@link BlobListingCache}.
+ */
+@Repository
+@Slf4j
+public class AzureBlobAsyncRepository {
+
+    @Value("${azure.storage.account-name}")
+    private String storageAccountName;
+
+    @Value("${azure.storage.container-name}")
+    private String containerName;
+
+    @Value("${azure.client-id}")
+    private String clientId;
+
+    @Value("${azure.client-secret}")
+    private String clientSecret;
+
+    @Value("${azure.tenant-id}")
+    private String tenantId;
+
+    @Autowired
+    private BlobListingCache listingCache;
+
+    private BlobContainerAsyncClient containerClient;
+
+    private synchronized BlobContainerAsyncClient getContainerClient() {
+        if (containerClient == null) {
+            ClientSecretCredential credential = new ClientSecretCredentialBuilder()
+                .clientId(clientId)
+                .clientSecret(clientSecret)
+                .tenantId(tenantId)
+                .build();
+
+            String endpoint = String.format("https://%s.blob.core.windows.net", storageAccountName);
+
+            BlobServiceAsyncClient serviceClient = new BlobServiceClientBuilder()
+                .endpoint(endpoint)
+                .credential(credential)
+                .buildAsyncClient();
+            containerClient = serviceClient.getBlobContainerAsyncClient(containerName);
+        }
+        return containerClient;
+    }
+
+    public Mono<List<String>> listBlobs(String prefix) {
+        List<String> cached = listingCache.peek(prefix);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return getContainerClient().listBlobsByHierarchy(prefix)
+                .map(BlobItem::getName)
+                .collectList()
+                .map(names -> listingCache.store(prefix, names))
+                .onErrorMap(e -> !(e instanceof BlobAccessException),
+                        e -> new BlobAccessException("Error listing blobs for prefix " + prefix + ": " + e.getMessage()));
+    }
+
+    public Mono<byte[]> getBlobContent(String blobName) {
+        return getContainerClient().getBlobAsyncClient(blobName)
+                .downloadContent()
+                .map(BinaryData::toBytes)
+                .onErrorMap(e -> new BlobAccessException("Error downloading blob " + blobName + ": " + e.getMessage()));
+    }
+}
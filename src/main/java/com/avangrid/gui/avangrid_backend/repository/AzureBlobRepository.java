@@ -1,19 +1,32 @@
 package com.avangrid.gui.avangrid_backend.repository;
 
+import com.avangrid.gui.avangrid_backend.exception.BlobAccessException;
+import com.avangrid.gui.avangrid_backend.util.SingleFlight;
+import com.azure.core.util.Context;
 import com.azure.identity.ClientSecretCredential;
 import com.azure.identity.ClientSecretCredentialBuilder;
 import com.azure.storage.blob.BlobClient;
 import com.azure.storage.blob.BlobContainerClient;
 import com.azure.storage.blob.BlobServiceClient;
 import com.azure.storage.blob.BlobServiceClientBuilder;
+import com.azure.storage.blob.models.BlobDownloadResponse;
 import com.azure.storage.blob.models.BlobItem;
+import com.azure.storage.blob.models.BlobRange;
+import com.azure.storage.blob.options.BlobDownloadToFileOptions;
+import com.azure.storage.blob.options.BlobInputStreamOptions;
+import com.azure.storage.common.ParallelTransferOptions;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
 
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import lombok.extern.slf4j.Slf4j;
 
 
@@ -36,11 +49,22 @@ public class AzureBlobRepository {
     @Value("${azure.tenant-id}")
     private String tenantId;
 
+    @Value("${azure.storage.download.block-size:8388608}")
+    private long downloadBlockSize;
+
+    @Value("${azure.storage.download.max-concurrency:8}")
+    private int downloadConcurrency;
+
+    @Autowired
+    private BlobListingCache listingCache;
+
     private BlobServiceClient blobServiceClient;
     private BlobContainerClient containerClient;
 
+    private final SingleFlight<String, byte[]> contentDownloads = new SingleFlight<>();
 
-    private BlobServiceClient getBlobServiceClient() {
+
+    private synchronized BlobServiceClient getBlobServiceClient() {
         if (blobServiceClient == null) {
             // Create Service Principal credential
             ClientSecretCredential credential = new ClientSecretCredentialBuilder()
@@ -60,7 +84,7 @@ public class AzureBlobRepository {
         return blobServiceClient;
     }
 
-    private BlobContainerClient getContainerClient() {
+    private synchronized BlobContainerClient getContainerClient() {
         if (containerClient == null) {
             containerClient = getBlobServiceClient().getBlobContainerClient(containerName);
         }
@@ -68,27 +92,137 @@ public class AzureBlobRepository {
     }
 
     public List<String> listBlobs(String prefix) {
+        try {
+            return listBlobsStrict(prefix);
+        } catch (BlobAccessException e) {
+            log.info(e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Same as {@link #listBlobs(String)} but surfaces Azure failures instead of
+     * returning an empty list, so callers can tell "no blobs" from "listing failed".
+     * Listings are served from {@link BlobListingCache} when possible.
+     */
+    public List<String> listBlobsStrict(String prefix) {
+        return listingCache.get(prefix, this::listBlobsUncached);
+    }
+
+    /**
+     * The listing of {@code prefix} if {@link BlobListingCache} holds a fresh
+     * copy, else {@code null}. Never calls Azure.
+     */
+    public List<String> peekListing(String prefix) {
+        return listingCache.peek(prefix);
+    }
+
+    private List<String> listBlobsUncached(String prefix) {
         List<String> blobNames = new ArrayList<>();
         try {
             for (BlobItem blobItem : getContainerClient().listBlobsByHierarchy(prefix)) {
                 blobNames.add(blobItem.getName());
             }
         } catch (Exception e) {
-            log.info("Error listing blobs: " + e.getMessage());
+            throw new BlobAccessException("Error listing blobs for prefix " + prefix + ": " + e.getMessage());
         }
         return blobNames;
     }
 
     public byte[] getBlobContent(String blobName) {
         try {
-            BlobClient blobClient = getContainerClient().getBlobClient(blobName);
-            return blobClient.downloadContent().toBytes();
-        } catch (Exception e) {
-            log.info("Error downloading blob: " + e.getMessage());
+            return getBlobContentStrict(blobName);
+        } catch (BlobAccessException e) {
+            log.info(e.getMessage());
             return new byte[0];
         }
     }
 
+    /**
+     * Same as {@link #getBlobContent(String)} but throws {@link BlobAccessException}
+     * instead of returning an empty array on failure. Concurrent calls for the
+     * same blob share one download, so the returned array must not be modified.
+     */
+    public byte[] getBlobContentStrict(String blobName) {
+        return contentDownloads.execute(blobName, () -> {
+            try {
+                BlobClient blobClient = getContainerClient().getBlobClient(blobName);
+                return blobClient.downloadContent().toBytes();
+            } catch (Exception e) {
+                throw new BlobAccessException("Error downloading blob " + blobName + ": " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Downloads a blob straight into {@code target}. Blobs larger than
+     * {@code azure.storage.download.block-size} are split into ranges fetched in
+     * parallel (up to {@code azure.storage.download.max-concurrency}) and written
+     * at their offsets, so large WAVs never pass through one heap array.
+     */
+    public void downloadToFile(String blobName, Path target) {
+        try {
+            BlobDownloadToFileOptions options = new BlobDownloadToFileOptions(target.toString())
+                    .setParallelTransferOptions(new ParallelTransferOptions()
+                            .setBlockSizeLong(downloadBlockSize)
+                            .setMaxConcurrency(downloadConcurrency))
+                    .setOpenOptions(Set.of(StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                            StandardOpenOption.READ, StandardOpenOption.WRITE));
+            getContainerClient().getBlobClient(blobName).downloadToFileWithResponse(options, null, Context.NONE);
+        } catch (Exception e) {
+            throw new BlobAccessException("Error downloading blob " + blobName + ": " + e.getMessage());
+        }
+    }
+
+    /** Current ETag of a blob; it changes whenever the blob content is replaced. */
+    public String getBlobETag(String blobName) {
+        try {
+            return getContainerClient().getBlobClient(blobName).getProperties().getETag();
+        } catch (Exception e) {
+            throw new BlobAccessException("Error reading properties of blob " + blobName + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * The first {@code length} bytes of a blob together with its ETag and total
+     * size, fetched with one ranged request. Shorter blobs are returned whole.
+     */
+    public BlobHead getBlobHead(String blobName, int length) {
+        try {
+            ByteArrayOutputStream head = new ByteArrayOutputStream(length);
+            BlobDownloadResponse response = getContainerClient().getBlobClient(blobName)
+                    .downloadStreamWithResponse(head, new BlobRange(0, (long) length), null, null, false, null, Context.NONE);
+            String contentRange = response.getDeserializedHeaders().getContentRange();
+            long size = contentRange != null && contentRange.contains("/")
+                    ? Long.parseLong(contentRange.substring(contentRange.lastIndexOf('/') + 1))
+                    : response.getDeserializedHeaders().getContentLength();
+            return new BlobHead(response.getDeserializedHeaders().getETag(), size, head.toByteArray());
+        } catch (Exception e) {
+            throw new BlobAccessException("Error reading header of blob " + blobName + ": " + e.getMessage());
+        }
+    }
+
+    public record BlobHead(String eTag, long size, byte[] bytes) {
+    }
+
+    /** Size of a blob in bytes. */
+    public long getBlobSize(String blobName) {
+        try {
+            return getContainerClient().getBlobClient(blobName).getProperties().getBlobSize();
+        } catch (Exception e) {
+            throw new BlobAccessException("Error reading properties of blob " + blobName + ": " + e.getMessage());
+        }
+    }
+
+    /** Whether a blob exists, checked with a properties request that transfers no content. */
+    public boolean blobExists(String blobName) {
+        try {
+            return getContainerClient().getBlobClient(blobName).exists();
+        } catch (Exception e) {
+            throw new BlobAccessException("Error checking blob " + blobName + ": " + e.getMessage());
+        }
+    }
+
     public boolean isContainerAvailable() {
     try {
         return getContainerClient().exists();
@@ -103,5 +237,11 @@ public class AzureBlobRepository {
         return blobClient.openInputStream();
     }
 
+    /** Streams {@code count} bytes of a blob starting at {@code offset}. */
+    public InputStream getBlobStream(String blobName, long offset, long count) {
+        BlobClient blobClient = getContainerClient().getBlobClient(blobName);
+        return blobClient.openInputStream(new BlobInputStreamOptions().setRange(new BlobRange(offset, count)));
+    }
+
 
 }
\ No newline at end of file
@@ -0,0 +1,147 @@
+package com.avangrid.gui.avangrid_backend.repository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Caches blob listings by prefix. Prefixes under a day folder
+ * ({@code OPCO/yyyy/M/d/...}) older than {@code azure.storage.listing-cache.immutable-after-days}
+ * are treated as immutable and never revalidated; everything else is relisted
+ * once it is older than {@code azure.storage.listing-cache.recent-ttl}.
+ * Memory is bounded by entry count and by the total number of cached names.
+ */
+@Component
+public class BlobListingCache {
+
+    private static final Pattern DAY_PREFIX = Pattern.compile("^[^/]+/(\\d{4})/(\\d{1,2})/(\\d{1,2})(/|$)");
+
+    private final int maxEntries;
+    private final long maxNames;
+    private final int immutableAfterDays;
+    private final long recentTtlNanos;
+
+    // access-ordered: iteration starts at the least recently used prefix
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long cachedNames;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter revalidations;
+    private final Counter evictions;
+
+    public BlobListingCache(MeterRegistry meterRegistry,
+                            @Value("${azure.storage.listing-cache.max-entries:20000}") int maxEntries,
+                            @Value("${azure.storage.listing-cache.max-names:2000000}") long maxNames,
+                            @Value("${azure.storage.listing-cache.immutable-after-days:2}") int immutableAfterDays,
+                            @Value("${azure.storage.listing-cache.recent-ttl:60s}") Duration recentTtl) {
+        this.maxEntries = maxEntries;
+        this.maxNames = maxNames;
+        this.immutableAfterDays = immutableAfterDays;
+        this.recentTtlNanos = recentTtl.toNanos();
+
+        this.hits = meterRegistry.counter("blob.listing.cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("blob.listing.cache.requests", "result", "miss");
+        this.revalidations = meterRegistry.counter("blob.listing.cache.requests", "result", "revalidate");
+        this.evictions = meterRegistry.counter("blob.listing.cache.evictions");
+        Gauge.builder("blob.listing.cache.size", this, BlobListingCache::size).register(meterRegistry);
+    }
+
+    /**
+     * Returns the cached listing for {@code prefix}, or lists through {@code loader}
+     * when it is missing or stale. Loader failures propagate and are not cached.
+     */
+    public List<String> get(String prefix, Function<String, List<String>> loader) {
+        long now = System.nanoTime();
+        Counter outcome;
+        synchronized (this) {
+            Entry entry = entries.get(prefix);
+            if (entry != null && (entry.immutable || now - entry.loadedAt <= recentTtlNanos)) {
+                hits.increment();
+                return entry.names;
+            }
+            outcome = entry == null ? misses : revalidations;
+        }
+        outcome.increment();
+
+        return store(prefix, loader.apply(prefix));
+    }
+
+    /** Caches a listing obtained elsewhere (e.g. by the async client) and returns the cached copy. */
+    public List<String> store(String prefix, List<String> listing) {
+        List<String> names = List.copyOf(listing);
+        put(prefix, new Entry(names, System.nanoTime(), isImmutable(prefix)));
+        return names;
+    }
+
+    /** Returns the listing for {@code prefix} only if it is cached and fresh, without calling Azure. */
+    public synchronized List<String> peek(String prefix) {
+        Entry entry = entries.get(prefix);
+        if (entry != null && (entry.immutable || System.nanoTime() - entry.loadedAt <= recentTtlNanos)) {
+            return entry.names;
+        }
+        return null;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private synchronized void put(String prefix, Entry entry) {
+        Entry previous = entries.put(prefix, entry);
+        if (previous != null) {
+            cachedNames -= previous.names.size();
+        }
+        cachedNames += entry.names.size();
+
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext() && (entries.size() > maxEntries || cachedNames > maxNames)) {
+            Map.Entry<String, Entry> eldest = it.next();
+            if (eldest.getKey().equals(prefix)) {
+                continue;
+            }
+            it.remove();
+            cachedNames -= eldest.getValue().names.size();
+            evictions.increment();
+        }
+    }
+
+    private boolean isImmutable(String prefix) {
+        Matcher matcher = DAY_PREFIX.matcher(prefix);
+        if (!matcher.find()) {
+            return false;
+        }
+        try {
+            LocalDate day = LocalDate.of(Integer.parseInt(matcher.group(1)),
+                    Integer.parseInt(matcher.group(2)), Integer.parseInt(matcher.group(3)));
+            return day.isBefore(LocalDate.now().minusDays(immutableAfterDays));
+        } catch (DateTimeException e) {
+            return false;
+        }
+    }
+
+    private static final class Entry {
+        private final List<String> names;
+        private final long loadedAt;
+        private final boolean immutable;
+
+        private Entry(List<String> names, long loadedAt, boolean immutable) {
+            this.names = names;
+            this.loadedAt = loadedAt;
+            this.immutable = immutable;
+        }
+    }
+}
@@ -1,12 +1,14 @@
 package com.avangrid.gui.avangrid_backend.repository;
 
 import com.avangrid.gui.avangrid_backend.model.Recording;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -15,4 +17,9 @@ public interface RecordingsRepo extends JpaRepository<Recording, Long>, JpaSpeci
     @Query("SELECT r FROM Recording r WHERE r.opco = :opco AND r.fileName = :fileName")
     List<Recording> findAllByOpcoAndFileName(@Param("opco") String opco,
                                              @Param("fileName") String fileName);
+
+    @Query("SELECT r FROM Recording r WHERE r.opco = :opco AND r.dateAdded >= :since ORDER BY r.dateAdded DESC")
+    List<Recording> findRecentByOpco(@Param("opco") String opco,
+                                     @Param("since") LocalDateTime since,
+                                     Pageable pageable);
 }
\ No newline at end of file
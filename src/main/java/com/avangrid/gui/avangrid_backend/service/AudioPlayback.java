@@ -0,0 +1,114 @@
+package com.avangrid.gui.avangrid_backend.service;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A recording ready to be written to a response: the whole file
+ * ({@code 200}), one byte range of it ({@code 206}) or a rejected range
+ * ({@code 416}). {@code contentLength} is {@code -1} while a transcode is
+ * still being produced and its size is unknown.
+ */
+public record AudioPlayback(EncodingProfile profile, HttpStatus status, long contentLength, String contentRange,
+                            StreamingResponseBody body) {
+
+    private static final Pattern SINGLE_RANGE = Pattern.compile("^bytes=(\\d*)-(\\d*)$");
+
+    static AudioPlayback full(EncodingProfile profile, long length, StreamingResponseBody body) {
+        return new AudioPlayback(profile, HttpStatus.OK, length, null, body);
+    }
+
+    static AudioPlayback partial(EncodingProfile profile, Range range, long length, StreamingResponseBody body) {
+        return new AudioPlayback(profile, HttpStatus.PARTIAL_CONTENT, range.length(),
+                "bytes " + range.start() + "-" + range.end() + "/" + length, body);
+    }
+
+    static AudioPlayback unsatisfiable(EncodingProfile profile, long length) {
+        return new AudioPlayback(profile, HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, 0, "bytes */" + length,
+                out -> { });
+    }
+
+    /** Response for a recording originally named {@code sourceFilename}; the extension follows the profile. */
+    public ResponseEntity<StreamingResponseBody> toResponseEntity(String sourceFilename) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(profile.format().getContentType()));
+        headers.setContentDispositionFormData("inline", profile.fileName(sourceFilename));
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (contentLength >= 0) {
+            headers.setContentLength(contentLength);
+        }
+        if (contentRange != null) {
+            headers.set(HttpHeaders.CONTENT_RANGE, contentRange);
+        }
+        return ResponseEntity.status(status).headers(headers).body(body);
+    }
+
+    /** An inclusive byte range within a file of known length. */
+    record Range(long start, long end) {
+
+        static final Range UNSATISFIABLE = new Range(-1, -1);
+
+        long length() {
+            return end - start + 1;
+        }
+
+        /**
+         * Resolves a {@code Range} header against {@code length}. Returns
+         * {@code null} when the whole file should be sent: no header, a syntax
+         * this endpoint does not serve (such as several ranges), or a range
+         * covering everything. Returns {@link #UNSATISFIABLE} for a range
+         * starting beyond the end.
+         */
+        static Range parse(String header, long length) {
+            if (header == null) {
+                return null;
+            }
+            Matcher matcher = SINGLE_RANGE.matcher(header.trim());
+            if (!matcher.matches() || (matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+                return null;
+            }
+            try {
+                long start;
+                long end;
+                if (matcher.group(1).isEmpty()) {
+                    // suffix range: the last N bytes
+                    long suffix = Long.parseLong(matcher.group(2));
+                    if (suffix == 0) {
+                        return UNSATISFIABLE;
+                    }
+                    start = Math.max(0, length - suffix);
+                    end = length - 1;
+                } else {
+                    start = Long.parseLong(matcher.group(1));
+                    end = matcher.group(2).isEmpty() ? length - 1 : Math.min(Long.parseLong(matcher.group(2)), length - 1);
+                    if (end < start && start < length) {
+                        return null;
+                    }
+                }
+                if (start >= length) {
+                    return UNSATISFIABLE;
+                }
+                return start == 0 && end == length - 1 ? null : new Range(start, end);
+            } catch (NumberFormatException e) {
+                // larger than a long; ignore the header
+                return null;
+            }
+        }
+
+        /** Whether a header asks for more than "everything from the start", without knowing the length yet. */
+        static boolean isSeek(String header) {
+            if (header == null) {
+                return false;
+            }
+            Matcher matcher = SINGLE_RANGE.matcher(header.trim());
+            return matcher.matches() && !(matcher.group(1).equals("0") && matcher.group(2).isEmpty())
+                    && !(matcher.group(1).isEmpty() && matcher.group(2).isEmpty());
+        }
+    }
+}
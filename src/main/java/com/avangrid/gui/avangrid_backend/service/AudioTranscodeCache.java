@@ -0,0 +1,268 @@
+package com.avangrid.gui.avangrid_backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Local disk cache of transcoded audio. Entries are content addressed by
+ * {@code sha256(blob name, ETag, encoding profile)}, so a re-uploaded blob or
+ * a changed profile never serves stale output. Finished files are published
+ * with an atomic rename, and the least recently used entries are deleted once
+ * the cache exceeds {@code audio.transcode.cache.max-bytes}.
+ */
+@Component
+@Slf4j
+public class AudioTranscodeCache {
+
+    private static final String ENTRY_SUFFIX = ".audio";
+    private static final String STAGING_SUFFIX = ".tmp";
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long maxBytes;
+
+    // access-ordered: iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public AudioTranscodeCache(MeterRegistry meterRegistry,
+                               @Value("${audio.transcode.cache.enabled:true}") boolean enabled,
+                               @Value("${audio.transcode.cache.dir:${java.io.tmpdir}/audio-transcode-cache}") String directory,
+                               @Value("${audio.transcode.cache.max-bytes:5368709120}") long maxBytes) {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.maxBytes = maxBytes;
+
+        this.hits = meterRegistry.counter("audio.transcode.cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("audio.transcode.cache.requests", "result", "miss");
+        this.evictions = meterRegistry.counter("audio.transcode.cache.evictions");
+        Gauge.builder("audio.transcode.cache.bytes", this, AudioTranscodeCache::totalBytes).register(meterRegistry);
+        Gauge.builder("audio.transcode.cache.entries", this, AudioTranscodeCache::size).register(meterRegistry);
+    }
+
+    /**
+     * Loads entries left by a previous run, oldest first so they are evicted
+     * first, and deletes unfinished staging files.
+     */
+    @PostConstruct
+    void loadDirectory() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(directory);
+        List<Path> existing = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(STAGING_SUFFIX)) {
+                    Files.deleteIfExists(file);
+                } else if (name.endsWith(ENTRY_SUFFIX)) {
+                    existing.add(file);
+                }
+            }
+        }
+        existing.sort(Comparator.comparingLong(this::lastModified));
+        synchronized (this) {
+            for (Path file : existing) {
+                String name = file.getFileName().toString();
+                long size = Files.size(file);
+                entries.put(name.substring(0, name.length() - ENTRY_SUFFIX.length()), size);
+                totalBytes += size;
+            }
+            evictOverflow(null);
+        }
+        log.info("Audio transcode cache at {} holds {} entries ({} bytes)", directory, entries.size(), totalBytes);
+    }
+
+    public String key(String blobName, String eTag, String profile) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            String identity = blobName + '\n' + eTag + '\n' + profile;
+            return HexFormat.of().formatHex(digest.digest(identity.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /** Whether {@code key} is cached; does not count as a cache request. */
+    public synchronized boolean contains(String key) {
+        return enabled && entries.containsKey(key);
+    }
+
+    /** Cached bytes for {@code key}, or {@code null} on a miss. */
+    public byte[] read(String key) {
+        if (!enabled) {
+            return null;
+        }
+        boolean known;
+        synchronized (this) {
+            known = entries.get(key) != null;
+        }
+        if (known) {
+            try {
+                byte[] bytes = Files.readAllBytes(entryPath(key));
+                hits.increment();
+                return bytes;
+            } catch (NoSuchFileException e) {
+                // evicted between the lookup and the read
+                forget(key);
+            } catch (IOException e) {
+                log.warn("Could not read cached transcode {}: {}", key, e.getMessage());
+                forget(key);
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Opens the cached entry for {@code key} for reading, or returns
+     * {@code null} on a miss. The caller closes the channel; an open entry
+     * stays readable on POSIX systems even if it is evicted meanwhile.
+     */
+    public FileChannel open(String key) {
+        if (!enabled) {
+            return null;
+        }
+        boolean known;
+        synchronized (this) {
+            known = entries.get(key) != null;
+        }
+        if (known) {
+            try {
+                FileChannel channel = FileChannel.open(entryPath(key), StandardOpenOption.READ);
+                hits.increment();
+                return channel;
+            } catch (NoSuchFileException e) {
+                // evicted between the lookup and the open
+                forget(key);
+            } catch (IOException e) {
+                log.warn("Could not open cached transcode {}: {}", key, e.getMessage());
+                forget(key);
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * A staging file in the cache directory to write a transcode into while it
+     * is produced, or {@code null} when caching is disabled. Pass it to
+     * {@link #publish} once complete, or delete it.
+     */
+    public Path newStagingFile(String key) {
+        return enabled ? directory.resolve(key + "." + UUID.randomUUID() + STAGING_SUFFIX) : null;
+    }
+
+    /**
+     * Moves a finished transcode into the cache. The file is staged in the cache
+     * directory first and then renamed atomically, so readers never see a
+     * partial entry. Failures only log; the caller already has its output.
+     */
+    public void publish(String key, Path finishedFile) {
+        if (!enabled) {
+            return;
+        }
+        boolean staged = directory.equals(finishedFile.getParent())
+                && finishedFile.getFileName().toString().endsWith(STAGING_SUFFIX);
+        Path staging = staged ? finishedFile : newStagingFile(key);
+        try {
+            if (!staged) {
+                Files.move(finishedFile, staging, StandardCopyOption.REPLACE_EXISTING);
+            }
+            long size = Files.size(staging);
+            Files.move(staging, entryPath(key), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            synchronized (this) {
+                Long previous = entries.put(key, size);
+                totalBytes += size - (previous != null ? previous : 0);
+                evictOverflow(key);
+            }
+        } catch (IOException e) {
+            log.warn("Could not publish transcode {} to cache: {}", key, e.getMessage());
+            try {
+                Files.deleteIfExists(staging);
+            } catch (IOException ignored) {
+                // staging files are removed at the next startup
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public synchronized long totalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void evictOverflow(String protectedKey) {
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (it.hasNext() && totalBytes > maxBytes) {
+            Map.Entry<String, Long> eldest = it.next();
+            if (eldest.getKey().equals(protectedKey)) {
+                continue;
+            }
+            it.remove();
+            totalBytes -= eldest.getValue();
+            evictions.increment();
+            try {
+                Files.deleteIfExists(entryPath(eldest.getKey()));
+            } catch (IOException e) {
+                log.warn("Could not delete cached transcode {}: {}", eldest.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    private synchronized void forget(String key) {
+        Long size = entries.remove(key);
+        if (size != null) {
+            totalBytes -= size;
+        }
+    }
+
+    private Path entryPath(String key) {
+        return directory.resolve(key + ENTRY_SUFFIX);
+    }
+
+    private long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
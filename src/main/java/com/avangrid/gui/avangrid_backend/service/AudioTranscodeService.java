@@ -0,0 +1,450 @@
+package com.avangrid.gui.avangrid_backend.service;
+
+import com.avangrid.gui.avangrid_backend.exception.RecordingProcessingException;
+import com.avangrid.gui.avangrid_backend.repository.AzureBlobRepository;
+import com.avangrid.gui.avangrid_backend.util.SingleFlight;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ws.schild.jave.Encoder;
+import ws.schild.jave.EncoderException;
+import ws.schild.jave.MultimediaObject;
+import ws.schild.jave.encode.AudioAttributes;
+import ws.schild.jave.encode.EncodingAttributes;
+import ws.schild.jave.process.ffmpeg.DefaultFFMPEGLocator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * WAV conversion shared by the VPI and recordings endpoints. The first few KB
+ * of the blob are read to pick an {@link EncodingProfile} that matches the
+ * source (see {@link EncodingProfileResolver}). Output is kept in
+ * {@link AudioTranscodeCache} under a key that includes the profile, so
+ * replaying a recording is a local file read.
+ * <p>
+ * With {@code audio.transcode.streaming} (the default) a cache miss pipes the
+ * blob stream into ffmpeg's stdin and writes its stdout to the response as it
+ * is produced, teeing it into the cache. Memory per request stays constant and
+ * no temp files are written besides the cache entry itself.
+ * <p>
+ * Every encode holds a {@link TranscodeScheduler} slot; cache hits do not.
+ * Identical encodes (same blob, ETag and profile) are coalesced with
+ * {@link SingleFlight}: requests arriving while one is running wait for it
+ * without a slot and are then served from the cache instead of starting their
+ * own ffmpeg. Only the caller that runs the encode takes a slot. Without the
+ * cache there is nothing to share, so streamed encodes are not coalesced.
+ */
+@Service
+public class AudioTranscodeService {
+
+    private static final int PIPE_BUFFER_BYTES = 64 * 1024;
+    private static final int STDERR_TAIL_BYTES = 4 * 1024;
+
+    private final AzureBlobRepository blobRepository;
+
+    private final AudioTranscodeCache transcodeCache;
+
+    private final TranscodeScheduler transcodeScheduler;
+
+    private final EncodingProfileResolver profileResolver;
+
+    private final boolean streaming;
+
+    // encodes into the cache, keyed by cache key
+    private final SingleFlight<String, Void> cacheEncodes = new SingleFlight<>();
+
+    // in-memory encodes when streaming is off, keyed by cache key
+    private final SingleFlight<String, byte[]> bufferedEncodes = new SingleFlight<>();
+
+    private volatile String ffmpegPath;
+
+    public AudioTranscodeService(AzureBlobRepository blobRepository, AudioTranscodeCache transcodeCache,
+                                 TranscodeScheduler transcodeScheduler, EncodingProfileResolver profileResolver,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${audio.transcode.streaming:true}") boolean streaming) {
+        this.blobRepository = blobRepository;
+        this.transcodeCache = transcodeCache;
+        this.transcodeScheduler = transcodeScheduler;
+        this.profileResolver = profileResolver;
+        this.streaming = streaming;
+
+        FunctionCounter.builder("audio.transcode.coalesced", this,
+                service -> service.cacheEncodes.sharedCount() + service.bufferedEncodes.sharedCount())
+                .register(meterRegistry);
+        Gauge.builder("audio.transcode.in-flight", this,
+                service -> service.cacheEncodes.inFlight() + service.bufferedEncodes.inFlight())
+                .register(meterRegistry);
+    }
+
+    /**
+     * Prepares {@code blobName} for playback by a client sending {@code accept}
+     * and, when seeking, {@code range}. The header is read up front, so a
+     * missing blob fails before the response is committed. A streamed encode
+     * takes its slot only once the body starts and finds no identical encode
+     * to wait for; a saturated scheduler then throws before anything is
+     * written, so it is still reported as {@code 429}, and a body that never
+     * runs holds no slot.
+     * <p>
+     * Ranges are served whenever the output length is known: passthrough WAVs
+     * via ranged blob reads, and cached or finished transcodes from the cache
+     * file with {@link FileChannel#transferTo}. A transcode that is not cached
+     * yet streams whole for requests starting at byte 0; a seek into it waits
+     * for the transcode to finish in the cache first.
+     */
+    public AudioPlayback playback(String blobName, String opco, String accept, String range) {
+        AzureBlobRepository.BlobHead head = blobRepository.getBlobHead(blobName, WavHeader.PROBE_BYTES);
+        EncodingProfile profile = profileResolver.resolve(WavHeader.parse(head.bytes()), opco, accept);
+        if (profile.isPassthrough()) {
+            return passthrough(blobName, profile, head.size(), range);
+        }
+        String cacheKey = transcodeCache.key(blobName, head.eTag(), profile.id());
+        if (!streaming) {
+            byte[] audio;
+            try {
+                audio = transcode(blobName, cacheKey, profile);
+            } catch (IOException e) {
+                throw new RecordingProcessingException("Error Converting wav to " + profile.format() + " " + e.getMessage());
+            }
+            return fromBytes(profile, audio, range);
+        }
+
+        FileChannel cached = transcodeCache.open(cacheKey);
+        if (cached == null && transcodeCache.isEnabled() && cacheEncodes.awaitInFlight(cacheKey)) {
+            // an identical encode was running; it has published to the cache unless it failed
+            cached = transcodeCache.open(cacheKey);
+        }
+        if (cached == null && transcodeCache.isEnabled() && AudioPlayback.Range.isSeek(range)) {
+            try {
+                cacheEncodes.execute(cacheKey, () -> {
+                    encodeWithSlot(blobName, cacheKey, profile, OutputStream.nullOutputStream());
+                    return null;
+                });
+            } catch (IOException e) {
+                throw new RecordingProcessingException("Error Converting wav to " + profile.format() + " " + e.getMessage());
+            }
+            cached = transcodeCache.open(cacheKey);
+        }
+        if (cached != null) {
+            return fromFile(profile, cached, range);
+        }
+
+        return AudioPlayback.full(profile, -1, out -> streamShared(blobName, cacheKey, profile, out));
+    }
+
+    /**
+     * Encodes to {@code out} and the cache, unless an identical encode started
+     * since the cache was checked; then waits for it, without holding a slot,
+     * and sends its cache entry. A slot is taken before anything is written,
+     * so a saturated scheduler still surfaces as {@code 429}.
+     */
+    private void streamShared(String blobName, String cacheKey, EncodingProfile profile, OutputStream out)
+            throws IOException {
+        if (!transcodeCache.isEnabled()) {
+            // a follower could only re-encode once the leader finished, so every request encodes on its own
+            encodeWithSlot(blobName, cacheKey, profile, out);
+            return;
+        }
+        boolean[] encodedHere = {false};
+        try {
+            cacheEncodes.execute(cacheKey, () -> {
+                encodedHere[0] = true;
+                encodeWithSlot(blobName, cacheKey, profile, out);
+                return null;
+            });
+        } catch (IOException | RuntimeException e) {
+            if (encodedHere[0]) {
+                throw e;
+            }
+            // the encode we waited for failed, e.g. its client went away; encode below instead
+        }
+        if (!encodedHere[0]) {
+            FileChannel channel = transcodeCache.open(cacheKey);
+            if (channel == null) {
+                encodeWithSlot(blobName, cacheKey, profile, out);
+                return;
+            }
+            try (channel) {
+                transfer(channel, 0, channel.size(), out);
+            }
+        }
+    }
+
+    private void encodeWithSlot(String blobName, String cacheKey, EncodingProfile profile, OutputStream out)
+            throws IOException {
+        try (TranscodeScheduler.Permit permit = transcodeScheduler.acquire()) {
+            pipeTranscode(blobName, cacheKey, profile, out);
+        }
+    }
+
+    /** Outcome of {@link #preTranscode}. */
+    public enum PreTranscodeResult { ENCODED, CACHED, PASSTHROUGH, BUSY }
+
+    /**
+     * Encodes {@code blobName} into the cache with the profile a default
+     * client would get, using a slot only while the scheduler is otherwise
+     * idle.
+     */
+    public PreTranscodeResult preTranscode(String blobName, String opco) throws IOException {
+        if (transcodeScheduler.isIdle()) {
+            AzureBlobRepository.BlobHead head = blobRepository.getBlobHead(blobName, WavHeader.PROBE_BYTES);
+            EncodingProfile profile = profileResolver.resolve(WavHeader.parse(head.bytes()), opco, null);
+            if (profile.isPassthrough()) {
+                return PreTranscodeResult.PASSTHROUGH;
+            }
+            String cacheKey = transcodeCache.key(blobName, head.eTag(), profile.id());
+            if (transcodeCache.contains(cacheKey)) {
+                return PreTranscodeResult.CACHED;
+            }
+            TranscodeScheduler.Permit permit = transcodeScheduler.tryAcquireIdle();
+            if (permit != null) {
+                try (permit) {
+                    cacheEncodes.execute(cacheKey, () -> {
+                        pipeTranscode(blobName, cacheKey, profile, OutputStream.nullOutputStream());
+                        return null;
+                    });
+                }
+                return PreTranscodeResult.ENCODED;
+            }
+        }
+        return PreTranscodeResult.BUSY;
+    }
+
+    private AudioPlayback passthrough(String blobName, EncodingProfile profile, long size, String rangeHeader) {
+        AudioPlayback.Range range = AudioPlayback.Range.parse(rangeHeader, size);
+        if (range == AudioPlayback.Range.UNSATISFIABLE) {
+            return AudioPlayback.unsatisfiable(profile, size);
+        }
+        if (range == null) {
+            return AudioPlayback.full(profile, size, out -> {
+                try (InputStream wav = blobRepository.getBlobStream(blobName)) {
+                    wav.transferTo(out);
+                }
+            });
+        }
+        return AudioPlayback.partial(profile, range, size, out -> {
+            try (InputStream wav = blobRepository.getBlobStream(blobName, range.start(), range.length())) {
+                wav.transferTo(out);
+            }
+        });
+    }
+
+    private static AudioPlayback fromFile(EncodingProfile profile, FileChannel channel, String rangeHeader) {
+        long size;
+        try {
+            size = channel.size();
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw new RecordingProcessingException("Error reading cached recording " + e.getMessage());
+        }
+        AudioPlayback.Range range = AudioPlayback.Range.parse(rangeHeader, size);
+        if (range == AudioPlayback.Range.UNSATISFIABLE) {
+            closeQuietly(channel);
+            return AudioPlayback.unsatisfiable(profile, size);
+        }
+        long start = range != null ? range.start() : 0;
+        long count = range != null ? range.length() : size;
+        StreamingResponseBody body = out -> {
+            try (channel) {
+                transfer(channel, start, count, out);
+            }
+        };
+        return range != null ? AudioPlayback.partial(profile, range, size, body) : AudioPlayback.full(profile, size, body);
+    }
+
+    private static AudioPlayback fromBytes(EncodingProfile profile, byte[] audio, String rangeHeader) {
+        AudioPlayback.Range range = AudioPlayback.Range.parse(rangeHeader, audio.length);
+        if (range == AudioPlayback.Range.UNSATISFIABLE) {
+            return AudioPlayback.unsatisfiable(profile, audio.length);
+        }
+        if (range == null) {
+            return AudioPlayback.full(profile, audio.length, out -> out.write(audio));
+        }
+        return AudioPlayback.partial(profile, range, audio.length,
+                out -> out.write(audio, (int) range.start(), (int) range.length()));
+    }
+
+    /** Copies a slice of a file with {@link FileChannel#transferTo}, avoiding a user-space buffer. */
+    static void transfer(FileChannel channel, long position, long count, OutputStream out) throws IOException {
+        WritableByteChannel target = Channels.newChannel(out);
+        while (count > 0) {
+            long sent = channel.transferTo(position, count, target);
+            if (sent <= 0) {
+                // the file ended early; nothing more to send
+                break;
+            }
+            position += sent;
+            count -= sent;
+        }
+        out.flush();
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // read-only channel
+        }
+    }
+
+    private byte[] transcode(String blobName, String cacheKey, EncodingProfile profile) throws IOException {
+        byte[] cached = transcodeCache.read(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+        return bufferedEncodes.execute(cacheKey, () -> {
+            try {
+                return encodeToBytes(blobName, cacheKey, profile);
+            } catch (EncoderException e) {
+                throw new RecordingProcessingException("Error Converting wav to " + profile.format() + " " + e.getMessage());
+            }
+        });
+    }
+
+    private byte[] encodeToBytes(String blobName, String cacheKey, EncodingProfile profile)
+            throws IOException, EncoderException {
+
+        Path tempDir = Files.createTempDirectory("audio_conversion_");
+        String uniqueId = UUID.randomUUID().toString();
+        Path inputFile = tempDir.resolve("input_" + uniqueId + ".wav");
+        Path outputFile = tempDir.resolve("output_" + uniqueId + profile.format().getExtension());
+
+        try (TranscodeScheduler.Permit permit = transcodeScheduler.acquire()) {
+            blobRepository.downloadToFile(blobName, inputFile);
+            encode(inputFile, outputFile, profile);
+            byte[] audio = Files.readAllBytes(outputFile);
+            transcodeCache.publish(cacheKey, outputFile);
+            return audio;
+        } finally {
+            // Clean up temporary files
+            Files.deleteIfExists(inputFile);
+            Files.deleteIfExists(outputFile);
+            Files.deleteIfExists(tempDir);
+        }
+    }
+
+    private void pipeTranscode(String blobName, String cacheKey, EncodingProfile profile, OutputStream out)
+            throws IOException {
+        List<String> command = new ArrayList<>(List.of(ffmpegPath(), "-hide_banner", "-loglevel", "error",
+                "-i", "pipe:0"));
+        command.addAll(profile.ffmpegOutputArgs());
+        command.add("pipe:1");
+        Process process = new ProcessBuilder(command).start();
+        byte[][] stderrTail = new byte[1][];
+        Thread stderrReader = Thread.ofVirtual().name("ffmpeg-stderr").start(() -> stderrTail[0] = tail(process));
+        // a failed download closes stdin early, which ffmpeg takes as a short but valid input
+        AtomicReference<Exception> feedFailure = new AtomicReference<>();
+        Thread stdinWriter = Thread.ofVirtual().name("ffmpeg-stdin").start(() -> {
+            try (InputStream wav = blobRepository.getBlobStream(blobName);
+                 OutputStream stdin = process.getOutputStream()) {
+                wav.transferTo(stdin);
+            } catch (Exception e) {
+                feedFailure.set(e);
+            }
+        });
+
+        Path staging = transcodeCache.newStagingFile(cacheKey);
+        boolean complete = false;
+        try (InputStream encoded = process.getInputStream();
+             OutputStream cacheCopy = staging != null ? Files.newOutputStream(staging) : OutputStream.nullOutputStream()) {
+            byte[] buffer = new byte[PIPE_BUFFER_BYTES];
+            int read;
+            while ((read = encoded.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                cacheCopy.write(buffer, 0, read);
+            }
+            out.flush();
+            int exitCode = process.waitFor();
+            stderrReader.join();
+            stdinWriter.join();
+            if (exitCode != 0) {
+                String detail = stderrTail[0] != null ? new String(stderrTail[0], StandardCharsets.UTF_8).trim() : "";
+                throw new RecordingProcessingException("Error Converting wav to " + profile.format() + ": ffmpeg exited with "
+                        + exitCode + " " + detail);
+            }
+            if (feedFailure.get() != null) {
+                throw new RecordingProcessingException("Error Converting wav to " + profile.format()
+                        + ": reading " + blobName + " failed: " + feedFailure.get().getMessage());
+            }
+            complete = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RecordingProcessingException(profile.format() + " conversion interrupted");
+        } finally {
+            // also reached when the client disconnects mid-stream
+            process.destroyForcibly();
+            stdinWriter.interrupt();
+            if (staging != null) {
+                if (complete) {
+                    transcodeCache.publish(cacheKey, staging);
+                } else {
+                    Files.deleteIfExists(staging);
+                }
+            }
+        }
+    }
+
+    /** Drains ffmpeg's stderr, keeping only the last few KB for error messages. */
+    private static byte[] tail(Process process) {
+        byte[] tail = new byte[0];
+        try (InputStream stderr = process.getErrorStream()) {
+            byte[] buffer = new byte[STDERR_TAIL_BYTES];
+            int read;
+            while ((read = stderr.read(buffer)) != -1) {
+                byte[] joined = new byte[Math.min(STDERR_TAIL_BYTES, tail.length + read)];
+                int keepOld = joined.length - read;
+                if (keepOld > 0) {
+                    System.arraycopy(tail, tail.length - keepOld, joined, 0, keepOld);
+                    System.arraycopy(buffer, 0, joined, keepOld, read);
+                } else {
+                    System.arraycopy(buffer, read - joined.length, joined, 0, joined.length);
+                }
+                tail = joined;
+            }
+        } catch (IOException e) {
+            // process destroyed
+        }
+        return tail;
+    }
+
+    /** The ffmpeg binary bundled with JAVE, extracted on first use. */
+    private String ffmpegPath() {
+        String path = ffmpegPath;
+        if (path == null) {
+            path = new DefaultFFMPEGLocator().getExecutablePath();
+            ffmpegPath = path;
+        }
+        return path;
+    }
+
+    private void encode(Path inputFile, Path outputFile, EncodingProfile profile) throws EncoderException {
+        MultimediaObject source = new MultimediaObject(inputFile.toFile());
+
+        AudioAttributes audio = new AudioAttributes();
+        audio.setCodec(profile.format().getCodec());
+        audio.setBitRate(profile.bitRateKbps() * 1000);
+        audio.setSamplingRate(profile.sampleRate());
+        audio.setChannels(profile.channels());
+
+        EncodingAttributes attrs = new EncodingAttributes();
+        attrs.setOutputFormat(profile.format().getContainer());
+        attrs.setAudioAttributes(audio);
+
+        Encoder encoder = new Encoder();
+        encoder.encode(source, outputFile.toFile(), attrs);
+    }
+}
@@ -0,0 +1,80 @@
+package com.avangrid.gui.avangrid_backend.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Target format for playing a recording. The {@link #id()} goes into
+ * transcode cache keys, so two profiles that encode differently never share
+ * a cache entry.
+ */
+public record EncodingProfile(Format format, int sampleRate, int channels, int bitRateKbps) {
+
+    public enum Format {
+        MP3("libmp3lame", "mp3", "audio/mpeg", ".mp3"),
+        OPUS("libopus", "ogg", "audio/ogg", ".ogg"),
+        /** The source WAV, sent without decoding. */
+        PASSTHROUGH(null, null, "audio/wav", ".wav");
+
+        private final String codec;
+        private final String container;
+        private final String contentType;
+        private final String extension;
+
+        Format(String codec, String container, String contentType, String extension) {
+            this.codec = codec;
+            this.container = container;
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getCodec() {
+            return codec;
+        }
+
+        public String getContainer() {
+            return container;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    /** What the encoder produced before profiles were source-aware; used when the header cannot be read. */
+    public static final EncodingProfile LEGACY_MP3 = new EncodingProfile(Format.MP3, 44100, 2, 128);
+
+    public boolean isPassthrough() {
+        return format == Format.PASSTHROUGH;
+    }
+
+    public String id() {
+        if (isPassthrough()) {
+            return "passthrough";
+        }
+        return String.format("%s-%s-%dk-%d-%dch",
+                format.name().toLowerCase(), format.getCodec(), bitRateKbps, sampleRate, channels);
+    }
+
+    /** {@code filename} with its extension replaced by this format's, e.g. {@code call.wav -> call.mp3}. */
+    public String fileName(String filename) {
+        int dot = filename.lastIndexOf('.');
+        return (dot > 0 ? filename.substring(0, dot) : filename) + format.getExtension();
+    }
+
+    /** ffmpeg output options for this profile, between the input and the output target. */
+    List<String> ffmpegOutputArgs() {
+        List<String> args = new ArrayList<>(List.of("-vn", "-codec:a", format.getCodec(),
+                "-b:a", bitRateKbps + "k", "-ar", String.valueOf(sampleRate), "-ac", String.valueOf(channels)));
+        if (format == Format.OPUS && sampleRate <= 16000) {
+            // speech tuning for narrowband and wideband call audio
+            args.addAll(List.of("-application", "voip"));
+        }
+        args.addAll(List.of("-f", format.getContainer()));
+        return args;
+    }
+}
@@ -0,0 +1,184 @@
+package com.avangrid.gui.avangrid_backend.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Chooses the {@link EncodingProfile} for a recording from its WAV header, its
+ * opco and the client's {@code Accept} header. Output never exceeds the source
+ * sample rate or channel count, so 8 kHz mono call audio is encoded as 8 kHz
+ * mono at a speech bitrate rather than upsampled to 44.1 kHz stereo.
+ * <p>
+ * The format is {@code audio.transcode.profile.format} unless the opco has an
+ * entry in {@code audio.transcode.profile.opco-formats}
+ * ({@code OPCO=format,...}). A client that explicitly accepts {@code audio/wav}
+ * gets plain PCM sources as they are, with no encode at all.
+ */
+@Component
+@Slf4j
+public class EncodingProfileResolver {
+
+    // sample rates LAME can encode, ascending
+    private static final int[] MP3_SAMPLE_RATES = {8000, 11025, 12000, 16000, 22050, 24000, 32000, 44100, 48000};
+    // sample rates libopus accepts, ascending
+    private static final int[] OPUS_SAMPLE_RATES = {8000, 12000, 16000, 24000, 48000};
+
+    private static final List<MediaType> WAV_TYPES = List.of(
+            MediaType.parseMediaType("audio/wav"), MediaType.parseMediaType("audio/x-wav"),
+            MediaType.parseMediaType("audio/wave"));
+    private static final List<MediaType> OPUS_TYPES = List.of(
+            MediaType.parseMediaType("audio/ogg"), MediaType.parseMediaType("audio/opus"));
+
+    private final EncodingProfile.Format defaultFormat;
+    private final Map<String, EncodingProfile.Format> opcoFormats;
+    private final int maxSampleRate;
+    private final int maxChannels;
+    private final boolean passthrough;
+
+    public EncodingProfileResolver(@Value("${audio.transcode.profile.format:mp3}") String defaultFormat,
+                                   @Value("${audio.transcode.profile.opco-formats:}") String opcoFormats,
+                                   @Value("${audio.transcode.profile.max-sample-rate:44100}") int maxSampleRate,
+                                   @Value("${audio.transcode.profile.max-channels:2}") int maxChannels,
+                                   @Value("${audio.transcode.profile.passthrough:true}") boolean passthrough) {
+        this.defaultFormat = parseFormat(defaultFormat);
+        this.opcoFormats = parseOpcoFormats(opcoFormats);
+        this.maxSampleRate = maxSampleRate;
+        this.maxChannels = maxChannels;
+        this.passthrough = passthrough;
+    }
+
+    /**
+     * @param header the source header, or {@code null} if it could not be read
+     * @param accept the request's {@code Accept} header, may be {@code null}
+     */
+    public EncodingProfile resolve(WavHeader header, String opco, String accept) {
+        List<MediaType> accepted = parseAccept(accept);
+        if (header == null) {
+            return EncodingProfile.LEGACY_MP3;
+        }
+        if (passthrough && header.isBrowserPlayable() && acceptsExplicitly(accepted, WAV_TYPES)) {
+            return new EncodingProfile(EncodingProfile.Format.PASSTHROUGH, header.sampleRate(), header.channels(), 0);
+        }
+
+        EncodingProfile.Format format = opco != null
+                ? opcoFormats.getOrDefault(opco.toUpperCase(Locale.ROOT), defaultFormat)
+                : defaultFormat;
+        if (format == EncodingProfile.Format.OPUS && !accepts(accepted, OPUS_TYPES)) {
+            format = EncodingProfile.Format.MP3;
+        }
+
+        int channels = Math.min(header.channels(), maxChannels);
+        int sourceRate = Math.min(header.sampleRate(), maxSampleRate);
+        return format == EncodingProfile.Format.OPUS
+                ? new EncodingProfile(format, atLeast(OPUS_SAMPLE_RATES, sourceRate), channels,
+                        channels * opusKbpsPerChannel(sourceRate))
+                : new EncodingProfile(format, atMost(MP3_SAMPLE_RATES, sourceRate), channels,
+                        channels * mp3KbpsPerChannel(sourceRate));
+    }
+
+    /** Speech needs far less than music; 64 kbps per channel keeps the old 128k stereo for CD-rate sources. */
+    private static int mp3KbpsPerChannel(int sampleRate) {
+        if (sampleRate <= 12000) {
+            return 24;
+        }
+        return sampleRate <= 24000 ? 32 : 64;
+    }
+
+    private static int opusKbpsPerChannel(int sampleRate) {
+        if (sampleRate <= 8000) {
+            return 12;
+        }
+        if (sampleRate <= 16000) {
+            return 16;
+        }
+        return sampleRate <= 24000 ? 24 : 48;
+    }
+
+    /** Largest supported rate not above {@code rate}, so the encoder never upsamples. */
+    private static int atMost(int[] supported, int rate) {
+        int chosen = supported[0];
+        for (int candidate : supported) {
+            if (candidate <= rate) {
+                chosen = candidate;
+            }
+        }
+        return chosen;
+    }
+
+    /** Smallest supported rate not below {@code rate}; Opus only runs at a few fixed rates. */
+    private static int atLeast(int[] supported, int rate) {
+        for (int candidate : supported) {
+            if (candidate >= rate) {
+                return candidate;
+            }
+        }
+        return supported[supported.length - 1];
+    }
+
+    private static boolean accepts(List<MediaType> accepted, List<MediaType> types) {
+        if (accepted.isEmpty()) {
+            return true;
+        }
+        for (MediaType mediaType : accepted) {
+            for (MediaType type : types) {
+                if (mediaType.includes(type)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Only a concrete listing counts; {@code *}{@code /*} from a browser says nothing about WAV support. */
+    private static boolean acceptsExplicitly(List<MediaType> accepted, List<MediaType> types) {
+        for (MediaType mediaType : accepted) {
+            if (!mediaType.isWildcardSubtype() && types.stream().anyMatch(mediaType::isCompatibleWith)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<MediaType> parseAccept(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return List.of();
+        }
+        try {
+            return MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            log.debug("Ignoring malformed Accept header {}: {}", accept, e.getMessage());
+            return List.of();
+        }
+    }
+
+    private static Map<String, EncodingProfile.Format> parseOpcoFormats(String value) {
+        Map<String, EncodingProfile.Format> formats = new HashMap<>();
+        for (String entry : value.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.split("=", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected OPCO=format in audio.transcode.profile.opco-formats: " + entry);
+            }
+            formats.put(parts[0].trim().toUpperCase(Locale.ROOT), parseFormat(parts[1]));
+        }
+        return formats;
+    }
+
+    private static EncodingProfile.Format parseFormat(String value) {
+        return switch (value.trim().toLowerCase(Locale.ROOT)) {
+            case "mp3" -> EncodingProfile.Format.MP3;
+            case "opus" -> EncodingProfile.Format.OPUS;
+            default -> throw new IllegalArgumentException("Unsupported audio format " + value + "; expected mp3 or opus");
+        };
+    }
+}
@@ -0,0 +1,342 @@
+package com.avangrid.gui.avangrid_backend.service;
+
+import com.avangrid.gui.avangrid_backend.model.RecordingRequest;
+import com.avangrid.gui.avangrid_backend.repository.AzureBlobRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes a ZIP of recordings to an output stream entry by entry. While one
+ * entry is being written, the next {@code recordings.export.prefetch} WAVs are
+ * already downloading, so throughput is bound by bandwidth rather than by one
+ * round trip per recording.
+ * <p>
+ * Prefetched WAVs are held in memory while the export stays under
+ * {@code recordings.export.max-buffer-bytes}; anything beyond that is
+ * downloaded to a temp file instead, so memory per export is capped no matter
+ * how large the recordings are. With {@code recordings.export.store-uncompressed}
+ * entries are written STORED, skipping deflate, which gains little on audio.
+ * <p>
+ * Blob names are resolved {@value #RESOLVE_BATCH} recordings at a time with
+ * {@link RecordingBlobResolver#resolveAll}, ahead of the downloads.
+ * <p>
+ * A recording that cannot be found or downloaded is skipped and listed in a
+ * trailing {@value #MANIFEST_NAME} entry instead of aborting the archive.
+ */
+@Component
+@Slf4j
+public class RecordingArchiveWriter {
+
+    static final String MANIFEST_NAME = "manifest.csv";
+
+    static final int RESOLVE_BATCH = 256;
+
+    private static final DateTimeFormatter REQUEST_DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final AzureBlobRepository blobRepository;
+    private final RecordingBlobResolver blobResolver;
+    private final int prefetch;
+    private final long maxBufferBytes;
+    private final boolean storeUncompressed;
+
+    public RecordingArchiveWriter(AzureBlobRepository blobRepository, RecordingBlobResolver blobResolver,
+                                  @Value("${recordings.export.prefetch:4}") int prefetch,
+                                  @Value("${recordings.export.max-buffer-bytes:268435456}") long maxBufferBytes,
+                                  @Value("${recordings.export.store-uncompressed:false}") boolean storeUncompressed) {
+        this.blobRepository = blobRepository;
+        this.blobResolver = blobResolver;
+        this.prefetch = Math.max(1, prefetch);
+        this.maxBufferBytes = maxBufferBytes;
+        this.storeUncompressed = storeUncompressed;
+    }
+
+    /** Outcome of one requested recording, as listed in the manifest. */
+    public record ManifestRow(RecordingRequest request, String entryName, String error) {
+    }
+
+    /** Told about each recording once it has been written to the archive or skipped. */
+    @FunctionalInterface
+    public interface ProgressListener {
+        void onRecording(ManifestRow row);
+    }
+
+    /** A downloaded WAV, in memory or in a temp file, ready to become an entry. */
+    private record Fetched(RecordingRequest request, String entryName, byte[] data, Path file, long size, long crc,
+                           String error) {
+
+        static Fetched failed(RecordingRequest request, String error) {
+            return new Fetched(request, null, null, null, 0, 0, error);
+        }
+    }
+
+    /** Writes the archive and returns the rows written to its manifest. */
+    public List<ManifestRow> write(List<RecordingRequest> requests, OutputStream out) throws IOException {
+        return write(requests, out, row -> { });
+    }
+
+    /** Writes the archive, reporting each recording to {@code progress} as it is done. */
+    public List<ManifestRow> write(List<RecordingRequest> requests, OutputStream out, ProgressListener progress)
+            throws IOException {
+        List<ManifestRow> manifest = new ArrayList<>(requests.size());
+        Set<String> entryNames = new HashSet<>();
+        AtomicLong bufferBudget = new AtomicLong(maxBufferBytes);
+        Path tempDir = Files.createTempDirectory("recordings_zip_");
+        ExecutorService fetchers = Executors.newVirtualThreadPerTaskExecutor();
+        Deque<Future<Fetched>> window = new ArrayDeque<>(prefetch);
+        try {
+            ZipOutputStream zos = new ZipOutputStream(out);
+            Map<RecordingBlobResolver.Key, String> resolved = Map.of();
+            int resolvedUpTo = 0;
+            int next = 0;
+            while (next < requests.size() || !window.isEmpty()) {
+                // keep up to `prefetch` downloads running ahead of the writer
+                while (next < requests.size() && window.size() < prefetch) {
+                    if (next == resolvedUpTo) {
+                        resolvedUpTo = Math.min(requests.size(), next + RESOLVE_BATCH);
+                        resolved = resolveBatch(requests.subList(next, resolvedUpTo));
+                    }
+                    RecordingRequest req = requests.get(next++);
+                    Map<RecordingBlobResolver.Key, String> batch = resolved;
+                    if (!entryNames.add(req.getFilename())) {
+                        window.add(CompletableFuture.completedFuture(Fetched.failed(req, "duplicate file name in request")));
+                    } else {
+                        window.add(fetchers.submit(() -> fetch(req, batch, tempDir, bufferBudget)));
+                    }
+                }
+                Fetched fetched = await(window.poll());
+                if (fetched.error() != null) {
+                    ManifestRow row = new ManifestRow(fetched.request(), null, fetched.error());
+                    manifest.add(row);
+                    progress.onRecording(row);
+                    continue;
+                }
+                try {
+                    writeEntry(zos, fetched);
+                } finally {
+                    release(fetched, bufferBudget);
+                }
+                ManifestRow row = new ManifestRow(fetched.request(), fetched.entryName(), null);
+                manifest.add(row);
+                progress.onRecording(row);
+            }
+
+            zos.putNextEntry(new ZipEntry(MANIFEST_NAME));
+            writeManifest(manifest, zos);
+            zos.closeEntry();
+            zos.finish();
+            zos.flush();
+            return manifest;
+        } finally {
+            // reached early when the client disconnects; stop downloads nobody will read
+            fetchers.shutdownNow();
+            awaitQuietly(fetchers);
+            deleteTree(tempDir);
+        }
+    }
+
+    private Fetched fetch(RecordingRequest req, Map<RecordingBlobResolver.Key, String> resolved, Path tempDir,
+                          AtomicLong bufferBudget) {
+        try {
+            RecordingBlobResolver.Key key = key(req);
+            String blobName = resolved.get(key);
+            if (blobName == null) {
+                // missing from the batch: either not there or its lookup failed; find out which
+                blobName = blobResolver.resolve(key);
+            }
+            if (blobName == null) {
+                return Fetched.failed(req, "recording not found");
+            }
+            long size = blobRepository.getBlobSize(blobName);
+            if (reserve(bufferBudget, size)) {
+                byte[] data;
+                try {
+                    data = blobRepository.getBlobContentStrict(blobName);
+                } catch (RuntimeException e) {
+                    bufferBudget.addAndGet(size);
+                    throw e;
+                }
+                // the blob may have been replaced since its size was read; keep the budget exact
+                bufferBudget.addAndGet(size - data.length);
+                return new Fetched(req, req.getFilename(), data, null, data.length, crc(data), null);
+            }
+            // over the memory cap: ranged parallel download to disk
+            Path wavFile = tempDir.resolve(UUID.randomUUID() + ".wav");
+            blobRepository.downloadToFile(blobName, wavFile);
+            return new Fetched(req, req.getFilename(), null, wavFile, Files.size(wavFile), crc(wavFile), null);
+        } catch (Exception e) {
+            log.warn("Skipping {} in ZIP export: {}", req.getFilename(), e.getMessage());
+            return Fetched.failed(req, e.getMessage());
+        }
+    }
+
+    private void writeEntry(ZipOutputStream zos, Fetched fetched) throws IOException {
+        ZipEntry entry = new ZipEntry(fetched.entryName());
+        if (storeUncompressed) {
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(fetched.size());
+            entry.setCompressedSize(fetched.size());
+            entry.setCrc(fetched.crc());
+        }
+        zos.putNextEntry(entry);
+        if (fetched.data() != null) {
+            zos.write(fetched.data());
+        } else {
+            Files.copy(fetched.file(), zos);
+        }
+        zos.closeEntry();
+    }
+
+    /** Only computed when entries are STORED; DEFLATED entries get their CRC from the ZIP stream. */
+    private long crc(byte[] data) {
+        if (!storeUncompressed) {
+            return 0;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+
+    private long crc(Path file) throws IOException {
+        if (!storeUncompressed) {
+            return 0;
+        }
+        CRC32 crc = new CRC32();
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static boolean reserve(AtomicLong budget, long bytes) {
+        long available;
+        do {
+            available = budget.get();
+            if (bytes > available) {
+                return false;
+            }
+        } while (!budget.compareAndSet(available, available - bytes));
+        return true;
+    }
+
+    private static void release(Fetched fetched, AtomicLong budget) throws IOException {
+        if (fetched.data() != null) {
+            budget.addAndGet(fetched.size());
+        }
+        if (fetched.file() != null) {
+            Files.deleteIfExists(fetched.file());
+        }
+    }
+
+    private static Fetched await(Future<Fetched> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a recording download", e);
+        } catch (ExecutionException e) {
+            // fetch() reports its own failures; this is a bug
+            throw new IOException("Recording download failed", e.getCause());
+        }
+    }
+
+    private Map<RecordingBlobResolver.Key, String> resolveBatch(List<RecordingRequest> batch) {
+        List<RecordingBlobResolver.Key> keys = new ArrayList<>(batch.size());
+        for (RecordingRequest req : batch) {
+            try {
+                keys.add(key(req));
+            } catch (IllegalArgumentException e) {
+                // reported by fetch()
+            }
+        }
+        return blobResolver.resolveAll(keys);
+    }
+
+    private static RecordingBlobResolver.Key key(RecordingRequest req) {
+        LocalDateTime fileDate;
+        try {
+            fileDate = LocalDateTime.parse(req.getDate(), REQUEST_DATE);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid date format " + req.getDate());
+        }
+        return RecordingBlobResolver.Key.of(req.getOpco(), fileDate, req.getFilename());
+    }
+
+    private static void writeManifest(List<ManifestRow> rows, OutputStream out) throws IOException {
+        // not closed: that would close the ZIP stream underneath
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        writer.write("opco,date,filename,entry,status,error\r\n");
+        for (ManifestRow row : rows) {
+            writer.write(csv(row.request().getOpco()) + ',' + csv(row.request().getDate()) + ','
+                    + csv(row.request().getFilename()) + ',' + csv(row.entryName()) + ','
+                    + (row.error() == null ? "ok" : "failed") + ',' + csv(row.error()) + "\r\n");
+        }
+        writer.flush();
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static void awaitQuietly(ExecutorService executor) {
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("ZIP export downloads still running after shutdown");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void deleteTree(Path dir) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(dir);
+        } catch (IOException e) {
+            log.warn("Could not clean up ZIP export directory {}: {}", dir, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.avangrid.gui.avangrid_backend.service;
+
+import com.avangrid.gui.avangrid_backend.exception.BlobAccessException;
+import com.avangrid.gui.avangrid_backend.repository.AzureBlobRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Finds the WAV blob of a recording. Recordings are stored as
+ * {@code OPCO/yyyy/M/d/<filename>.wav}, so the name is built directly and
+ * answered, in order of cost, from names resolved before, from a fresh
+ * listing of the recording or its day already in {@link
+ * com.avangrid.gui.avangrid_backend.repository.BlobListingCache}, or from one
+ * existence check. Only a blob named differently than expected falls back to
+ * listing the recording's prefix, which is what every lookup used to do.
+ * <p>
+ * {@link #resolveAll} serves batch callers: a day with at least
+ * {@code recordings.blob-resolver.day-listing-threshold} requested recordings
+ * is listed once, and the remaining names are checked in parallel.
+ */
+@Component
+@Slf4j
+public class RecordingBlobResolver {
+
+    private static final String WAV_SUFFIX = ".wav";
+
+    private final AzureBlobRepository blobRepository;
+    private final int dayListingThreshold;
+    private final int batchConcurrency;
+    private final int cacheSize;
+
+    // recording prefix -> WAV blob; blob names never change once written, so only found names are kept
+    private final LinkedHashMap<String, String> resolved = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > cacheSize;
+        }
+    };
+
+    private final Counter cachedLookups;
+    private final Counter probedLookups;
+    private final Counter listedLookups;
+    private final Counter missingLookups;
+
+    public RecordingBlobResolver(AzureBlobRepository blobRepository, MeterRegistry meterRegistry,
+                                 @Value("${recordings.blob-resolver.day-listing-threshold:16}") int dayListingThreshold,
+                                 @Value("${recordings.blob-resolver.batch-concurrency:16}") int batchConcurrency,
+                                 @Value("${recordings.blob-resolver.cache-size:20000}") int cacheSize) {
+        this.blobRepository = blobRepository;
+        this.dayListingThreshold = dayListingThreshold;
+        this.batchConcurrency = Math.max(1, batchConcurrency);
+        this.cacheSize = cacheSize;
+
+        this.cachedLookups = meterRegistry.counter("recordings.blob.lookups", "result", "cached");
+        this.probedLookups = meterRegistry.counter("recordings.blob.lookups", "result", "probed");
+        this.listedLookups = meterRegistry.counter("recordings.blob.lookups", "result", "listed");
+        this.missingLookups = meterRegistry.counter("recordings.blob.lookups", "result", "missing");
+    }
+
+    /** A recording as requested: its opco, the day it was recorded and its file name. */
+    public record Key(String opco, LocalDate day, String filename) {
+
+        public static Key of(String opco, LocalDateTime date, String filename) {
+            return new Key(opco, date.toLocalDate(), filename);
+        }
+
+        /** The day folder, {@code OPCO/yyyy/M/d/}. */
+        String dayPrefix() {
+            return String.format("%s/%d/%d/%d/", opco, day.getYear(), day.getMonthValue(), day.getDayOfMonth());
+        }
+
+        /** Every blob of the recording starts with this. */
+        String prefix() {
+            return dayPrefix() + filename;
+        }
+
+        String expectedBlobName() {
+            return isWav(filename) ? prefix() : prefix() + WAV_SUFFIX;
+        }
+    }
+
+    /**
+     * The WAV blob of {@code key}, or {@code null} if the recording has none.
+     * Throws {@link BlobAccessException} when Azure cannot be asked.
+     */
+    public String resolve(Key key) {
+        String prefix = key.prefix();
+        String known = remembered(prefix);
+        if (known != null) {
+            cachedLookups.increment();
+            return known;
+        }
+        // a fresh listing is authoritative either way
+        for (String listedPrefix : List.of(prefix, key.dayPrefix())) {
+            List<String> listing = blobRepository.peekListing(listedPrefix);
+            if (listing != null) {
+                String listed = findWav(listing, prefix);
+                if (listed != null) {
+                    listedLookups.increment();
+                }
+                return found(prefix, listed);
+            }
+        }
+        String expected = key.expectedBlobName();
+        if (blobRepository.blobExists(expected)) {
+            probedLookups.increment();
+            return found(prefix, expected);
+        }
+        // named differently than expected, e.g. an upper-case .WAV; list it the old way
+        String listed = findWav(blobRepository.listBlobsStrict(prefix), prefix);
+        if (listed != null) {
+            listedLookups.increment();
+        }
+        return found(prefix, listed);
+    }
+
+    /**
+     * Resolves many recordings at once. Keys whose recording is missing, or
+     * whose lookup failed, are absent from the result; {@link #resolve} tells
+     * the two apart for a single key.
+     */
+    public Map<Key, String> resolveAll(Collection<Key> keys) {
+        Map<Key, String> result = new ConcurrentHashMap<>();
+        Map<String, List<Key>> byDay = new LinkedHashMap<>();
+        for (Key key : keys) {
+            byDay.computeIfAbsent(key.dayPrefix(), d -> new ArrayList<>()).add(key);
+        }
+
+        List<Key> individually = new ArrayList<>();
+        for (Map.Entry<String, List<Key>> day : byDay.entrySet()) {
+            List<String> listing = blobRepository.peekListing(day.getKey());
+            if (listing == null && day.getValue().size() >= dayListingThreshold) {
+                try {
+                    listing = blobRepository.listBlobsStrict(day.getKey());
+                } catch (BlobAccessException e) {
+                    log.debug("Listing {} failed, resolving its recordings one by one: {}", day.getKey(), e.getMessage());
+                }
+            }
+            if (listing == null) {
+                individually.addAll(day.getValue());
+                continue;
+            }
+            for (Key key : day.getValue()) {
+                String blobName = found(key.prefix(), findWav(listing, key.prefix()));
+                if (blobName != null) {
+                    listedLookups.increment();
+                    result.put(key, blobName);
+                }
+            }
+        }
+
+        if (!individually.isEmpty()) {
+            Semaphore inFlight = new Semaphore(batchConcurrency);
+            try (ExecutorService lookups = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (Key key : individually) {
+                    lookups.submit(() -> {
+                        inFlight.acquireUninterruptibly();
+                        try {
+                            String blobName = resolve(key);
+                            if (blobName != null) {
+                                result.put(key, blobName);
+                            }
+                        } catch (RuntimeException e) {
+                            log.debug("Resolving {} failed: {}", key.prefix(), e.getMessage());
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                }
+            }
+        }
+        return result;
+    }
+
+    private static String findWav(List<String> listing, String prefix) {
+        for (String blobName : listing) {
+            if (blobName.startsWith(prefix) && isWav(blobName)) {
+                return blobName;
+            }
+        }
+        return null;
+    }
+
+    /** Whether {@code name} ends in {@code .wav}, in any case. */
+    private static boolean isWav(String name) {
+        return name.regionMatches(true, name.length() - WAV_SUFFIX.length(), WAV_SUFFIX, 0, WAV_SUFFIX.length());
+    }
+
+    private synchronized String remembered(String prefix) {
+        return resolved.get(prefix);
+    }
+
+    private String found(String prefix, String blobName) {
+        if (blobName == null) {
+            missingLookups.increment();
+            return null;
+        }
+        synchronized (this) {
+            resolved.put(prefix, blobName);
+        }
+        return blobName;
+    }
+}
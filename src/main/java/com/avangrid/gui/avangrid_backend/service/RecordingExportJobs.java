@@ -0,0 +1,329 @@
+package com.avangrid.gui.avangrid_backend.service;
+
+import com.avangrid.gui.avangrid_backend.exception.ExportNotReadyException;
+import com.avangrid.gui.avangrid_backend.exception.ExportQueueFullException;
+import com.avangrid.gui.avangrid_backend.exception.InvalidRequestException;
+import com.avangrid.gui.avangrid_backend.exception.RecordingNotFoundException;
+import com.avangrid.gui.avangrid_backend.exception.RecordingProcessingException;
+import com.avangrid.gui.avangrid_backend.model.ExportJobStatus;
+import com.avangrid.gui.avangrid_backend.model.RecordingRequest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Builds recording ZIPs in the background for exports too large to stream
+ * within a request. A submitted job queues for one of
+ * {@code recordings.export.jobs.max-concurrent} workers, writes its archive
+ * with {@link RecordingArchiveWriter} to {@code recordings.export.jobs.dir},
+ * and reports progress per recording. Finished archives are served with
+ * {@code Range} support so an interrupted download can resume, and are
+ * deleted {@code recordings.export.jobs.ttl} after the job ends.
+ * <p>
+ * Jobs live in memory only; archives left on disk by a previous run are
+ * deleted at startup.
+ */
+@Service
+@Slf4j
+public class RecordingExportJobs {
+
+    private static final String ARCHIVE_SUFFIX = ".zip";
+    private static final String STAGING_SUFFIX = ".zip.tmp";
+
+    enum State { QUEUED, RUNNING, COMPLETED, FAILED }
+
+    private final RecordingArchiveWriter archiveWriter;
+    private final Path directory;
+    private final Duration ttl;
+    private final int maxRecordings;
+    private final ThreadPoolExecutor workers;
+
+    private final ConcurrentHashMap<String, Job> jobs = new ConcurrentHashMap<>();
+
+    private final Counter completedJobs;
+    private final Counter failedJobs;
+    private final Counter expiredJobs;
+
+    public RecordingExportJobs(RecordingArchiveWriter archiveWriter, MeterRegistry meterRegistry,
+                               @Value("${recordings.export.jobs.dir:${java.io.tmpdir}/recording-exports}") String directory,
+                               @Value("${recordings.export.jobs.max-concurrent:2}") int maxConcurrent,
+                               @Value("${recordings.export.jobs.max-queued:16}") int maxQueued,
+                               @Value("${recordings.export.jobs.ttl:24h}") Duration ttl,
+                               @Value("${recordings.export.jobs.max-recordings:10000}") int maxRecordings) {
+        this.archiveWriter = archiveWriter;
+        this.directory = Paths.get(directory);
+        this.ttl = ttl;
+        this.maxRecordings = maxRecordings;
+        int threads = Math.max(1, maxConcurrent);
+        this.workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, maxQueued)),
+                Thread.ofPlatform().name("recording-export-", 0).daemon(true).factory());
+
+        this.completedJobs = meterRegistry.counter("recordings.export.jobs", "result", "completed");
+        this.failedJobs = meterRegistry.counter("recordings.export.jobs", "result", "failed");
+        this.expiredJobs = meterRegistry.counter("recordings.export.jobs", "result", "expired");
+        Gauge.builder("recordings.export.jobs.active", workers, ThreadPoolExecutor::getActiveCount).register(meterRegistry);
+        Gauge.builder("recordings.export.jobs.queued", workers, w -> w.getQueue().size()).register(meterRegistry);
+    }
+
+    private static final class Job {
+        final String id;
+        final int total;
+        final Path archive;
+        final LocalDateTime createdAt = LocalDateTime.now();
+        final AtomicInteger processed = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final AtomicLong bytesWritten = new AtomicLong();
+
+        // dropped once the job ends, so finished jobs waiting for download hold no request list
+        volatile List<RecordingRequest> requests;
+        volatile State state = State.QUEUED;
+        volatile LocalDateTime completedAt;
+        volatile LocalDateTime expiresAt;
+        volatile String error;
+
+        Job(String id, List<RecordingRequest> requests, Path archive) {
+            this.id = id;
+            this.total = requests.size();
+            this.requests = requests;
+            this.archive = archive;
+        }
+
+        ExportJobStatus status() {
+            return ExportJobStatus.builder()
+                    .jobId(id)
+                    .state(state.name())
+                    .totalRecordings(total)
+                    .processedRecordings(processed.get())
+                    .failedRecordings(failed.get())
+                    .archiveBytes(bytesWritten.get())
+                    .createdAt(createdAt)
+                    .completedAt(completedAt)
+                    .expiresAt(expiresAt)
+                    .error(error)
+                    .build();
+        }
+    }
+
+    /** Deletes archives of a previous run; their jobs are gone, so nobody can download them. */
+    @PostConstruct
+    void prepareDirectory() throws IOException {
+        Files.createDirectories(directory);
+        int deleted = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(ARCHIVE_SUFFIX) || name.endsWith(STAGING_SUFFIX)) {
+                    Files.deleteIfExists(file);
+                    deleted++;
+                }
+            }
+        }
+        if (deleted > 0) {
+            log.info("Deleted {} export archives left in {}", deleted, directory);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /** Queues an export of {@code requests}, which the caller has already validated. */
+    public ExportJobStatus submit(List<RecordingRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            throw new InvalidRequestException("At least one recording is required");
+        }
+        if (requests.size() > maxRecordings) {
+            throw new InvalidRequestException("An export can contain at most " + maxRecordings + " recordings");
+        }
+        String id = UUID.randomUUID().toString();
+        Job job = new Job(id, List.copyOf(requests), directory.resolve(id + ARCHIVE_SUFFIX));
+        jobs.put(id, job);
+        try {
+            workers.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(id);
+            throw new ExportQueueFullException("Too many exports are queued; try again later");
+        }
+        log.info("Queued export job {} with {} recordings", id, job.total);
+        return job.status();
+    }
+
+    public ExportJobStatus status(String jobId) {
+        return find(jobId).status();
+    }
+
+    /**
+     * The finished archive of {@code jobId}, or the part of it requested by
+     * {@code rangeHeader}. The ETag is the job id: an archive never changes,
+     * so a client may resume with any range of it. A job that is still
+     * running or has failed is reported as {@code 409}; its status endpoint
+     * tells which. The archive is only opened once the body runs.
+     */
+    public ResponseEntity<StreamingResponseBody> download(String jobId, String rangeHeader) {
+        Job job = find(jobId);
+        if (job.state == State.FAILED) {
+            throw new ExportNotReadyException("Export job " + jobId + " failed: " + job.error);
+        }
+        if (job.state != State.COMPLETED) {
+            throw new ExportNotReadyException("Export job " + jobId + " is not finished yet");
+        }
+        long size;
+        try {
+            size = Files.size(job.archive);
+        } catch (NoSuchFileException e) {
+            throw new RecordingNotFoundException("Export job not found: " + jobId);
+        } catch (IOException e) {
+            throw new RecordingProcessingException("Error reading export archive " + e.getMessage());
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.setContentDispositionFormData("attachment", "recordings-" + jobId + ".zip");
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        headers.setETag("\"" + jobId + "\"");
+
+        AudioPlayback.Range range = AudioPlayback.Range.parse(rangeHeader, size);
+        if (range == AudioPlayback.Range.UNSATISFIABLE) {
+            headers.set(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE).headers(headers).build();
+        }
+        long start = range != null ? range.start() : 0;
+        long count = range != null ? range.length() : size;
+        headers.setContentLength(count);
+        if (range != null) {
+            headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + range.start() + "-" + range.end() + "/" + size);
+        }
+        StreamingResponseBody body = out -> {
+            try (FileChannel channel = FileChannel.open(job.archive, StandardOpenOption.READ)) {
+                AudioTranscodeService.transfer(channel, start, count, out);
+            }
+        };
+        return ResponseEntity.status(range != null ? HttpStatus.PARTIAL_CONTENT : HttpStatus.OK)
+                .headers(headers)
+                .body(body);
+    }
+
+    /** Forgets jobs whose retention has passed and deletes their archives. */
+    @Scheduled(fixedDelayString = "${recordings.export.jobs.gc-interval-ms:600000}")
+    public void deleteExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        for (Job job : jobs.values()) {
+            LocalDateTime expiresAt = job.expiresAt;
+            if (expiresAt == null || expiresAt.isAfter(now) || !jobs.remove(job.id, job)) {
+                continue;
+            }
+            try {
+                // a download already in progress keeps its open channel
+                Files.deleteIfExists(job.archive);
+            } catch (IOException e) {
+                log.warn("Could not delete export archive {}: {}", job.archive, e.getMessage());
+            }
+            expiredJobs.increment();
+            log.debug("Export job {} expired", job.id);
+        }
+    }
+
+    private void run(Job job) {
+        job.state = State.RUNNING;
+        Path staging = directory.resolve(job.id + STAGING_SUFFIX);
+        State outcome = State.FAILED;
+        try {
+            try (OutputStream out = new CountingOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(staging), 64 * 1024), job.bytesWritten)) {
+                archiveWriter.write(job.requests, out, row -> {
+                    job.processed.incrementAndGet();
+                    if (row.error() != null) {
+                        job.failed.incrementAndGet();
+                    }
+                });
+            }
+            Files.move(staging, job.archive, StandardCopyOption.ATOMIC_MOVE);
+            outcome = State.COMPLETED;
+            completedJobs.increment();
+            log.info("Export job {} finished: {} recordings, {} skipped, {} bytes",
+                    job.id, job.total, job.failed.get(), job.bytesWritten.get());
+        } catch (Exception e) {
+            job.error = e.getMessage();
+            failedJobs.increment();
+            log.error("Export job {} failed: {}", job.id, e.getMessage());
+            try {
+                Files.deleteIfExists(staging);
+            } catch (IOException ignored) {
+                // removed at the next startup
+            }
+        } finally {
+            job.requests = null;
+            job.completedAt = LocalDateTime.now();
+            job.expiresAt = job.completedAt.plus(ttl);
+            // last, so a finished job is never reported without its times
+            job.state = outcome;
+        }
+    }
+
+    private Job find(String jobId) {
+        Job job = jobId == null ? null : jobs.get(jobId);
+        if (job == null) {
+            throw new RecordingNotFoundException("Export job not found: " + jobId);
+        }
+        return job;
+    }
+
+    /** Tracks archive size while it is written, for progress reports. */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private final AtomicLong count;
+
+        CountingOutputStream(OutputStream out, AtomicLong count) {
+            super(out);
+            this.count = count;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count.incrementAndGet();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count.addAndGet(len);
+        }
+    }
+}
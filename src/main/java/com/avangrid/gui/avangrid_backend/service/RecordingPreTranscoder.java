@@ -0,0 +1,144 @@
+package com.avangrid.gui.avangrid_backend.service;
+
+import com.avangrid.gui.avangrid_backend.model.Recording;
+import com.avangrid.gui.avangrid_backend.repository.RecordingsRepo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Transcodes recently added recordings into {@link AudioTranscodeCache} before
+ * anyone plays them. Each run reads the newest rows of the {@code recordings}
+ * table per opco ({@code audio.pretranscode.opcos}) added within
+ * {@code audio.pretranscode.lookback}, interleaves the opcos newest first, and
+ * encodes until the batch is done or an interactive request needs the
+ * {@link TranscodeScheduler}. Background encodes only start while the
+ * scheduler is idle, so they never queue ahead of a user.
+ */
+@Component
+@Slf4j
+public class RecordingPreTranscoder {
+
+    private static final int DONE_CAPACITY = 50_000;
+
+    private final RecordingsRepo recordingsRepo;
+    private final RecordingBlobResolver blobResolver;
+    private final AudioTranscodeService audioTranscodeService;
+
+    private final boolean enabled;
+    private final List<String> opcos;
+    private final Duration lookback;
+    private final int batchSize;
+
+    // recordings already handled, so later runs skip them without touching Azure
+    private final LinkedHashMap<String, Boolean> done = new LinkedHashMap<>(1024, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > DONE_CAPACITY;
+        }
+    };
+
+    private final Counter encoded;
+    private final Counter alreadyCached;
+    private final Counter notNeeded;
+    private final Counter failed;
+
+    public RecordingPreTranscoder(RecordingsRepo recordingsRepo, RecordingBlobResolver blobResolver,
+                                  AudioTranscodeService audioTranscodeService, MeterRegistry meterRegistry,
+                                  @Value("${audio.pretranscode.enabled:true}") boolean enabled,
+                                  @Value("${audio.pretranscode.opcos:RGE,CMP,NYSEG}") String opcos,
+                                  @Value("${audio.pretranscode.lookback:24h}") Duration lookback,
+                                  @Value("${audio.pretranscode.batch-size:50}") int batchSize) {
+        this.recordingsRepo = recordingsRepo;
+        this.blobResolver = blobResolver;
+        this.audioTranscodeService = audioTranscodeService;
+        this.enabled = enabled;
+        this.opcos = Arrays.stream(opcos.split(",")).map(String::trim).filter(o -> !o.isEmpty()).toList();
+        this.lookback = lookback;
+        this.batchSize = batchSize;
+
+        this.encoded = meterRegistry.counter("audio.pretranscode.recordings", "result", "encoded");
+        this.alreadyCached = meterRegistry.counter("audio.pretranscode.recordings", "result", "cached");
+        this.notNeeded = meterRegistry.counter("audio.pretranscode.recordings", "result", "skipped");
+        this.failed = meterRegistry.counter("audio.pretranscode.recordings", "result", "failed");
+    }
+
+    @Scheduled(initialDelayString = "${audio.pretranscode.initial-delay-ms:60000}",
+            fixedDelayString = "${audio.pretranscode.interval-ms:60000}")
+    public void preTranscodeRecent() {
+        if (!enabled) {
+            return;
+        }
+        int handled = 0;
+        for (Recording recording : newestFirst()) {
+            String doneKey = recording.getOpco() + "/" + recording.getFileName();
+            if (done.containsKey(doneKey)) {
+                continue;
+            }
+            AudioTranscodeService.PreTranscodeResult result;
+            try {
+                String blobName = blobResolver.resolve(RecordingBlobResolver.Key.of(
+                        recording.getOpco(), recording.getDateAdded(), recording.getFileName()));
+                if (blobName == null) {
+                    notNeeded.increment();
+                    done.put(doneKey, Boolean.TRUE);
+                    continue;
+                }
+                result = audioTranscodeService.preTranscode(blobName, recording.getOpco());
+            } catch (Exception e) {
+                // retried on a later run; a persistently broken blob costs one attempt per interval
+                failed.increment();
+                log.debug("Pre-transcoding {} failed: {}", doneKey, e.getMessage());
+                continue;
+            }
+            switch (result) {
+                case ENCODED -> encoded.increment();
+                case CACHED -> alreadyCached.increment();
+                case PASSTHROUGH -> notNeeded.increment();
+                case BUSY -> {
+                    log.debug("Pre-transcoding paused after {} recordings; interactive transcodes are running", handled);
+                    return;
+                }
+            }
+            done.put(doneKey, Boolean.TRUE);
+            handled++;
+        }
+        if (handled > 0) {
+            log.info("Pre-transcoded {} recent recordings", handled);
+        }
+    }
+
+    /** Recent recordings of every opco, interleaved so each opco's newest come first. */
+    private List<Recording> newestFirst() {
+        LocalDateTime since = LocalDateTime.now().minus(lookback);
+        List<Iterator<Recording>> perOpco = new ArrayList<>();
+        for (String opco : opcos) {
+            perOpco.add(recordingsRepo.findRecentByOpco(opco, since, PageRequest.of(0, batchSize)).iterator());
+        }
+        List<Recording> interleaved = new ArrayList<>();
+        boolean more = true;
+        while (more) {
+            more = false;
+            for (Iterator<Recording> it : perOpco) {
+                if (it.hasNext()) {
+                    interleaved.add(it.next());
+                    more = true;
+                }
+            }
+        }
+        return interleaved;
+    }
+}
@@ -45,6 +45,19 @@ public final class RecordingSpecifications {
         };
     }
 
+    /**
+     * Rows after ({@code dateAdded}, {@code fileName}) in the order
+     * {@code dateAdded DESC, fileName DESC}: the seek predicate of keyset paging.
+     */
+    public static Specification<Recording> seekBefore(LocalDateTime dateAdded, String fileName) {
+        return (root, query, cb) -> {
+            Path<LocalDateTime> datePath = root.get("dateAdded");
+            return cb.or(
+                    cb.lessThan(datePath, dateAdded),
+                    cb.and(cb.equal(datePath, dateAdded), cb.lessThan(root.<String>get("fileName"), fileName)));
+        };
+    }
+
 
     public static Specification<Recording> containsString(String coloumn, String fileName) {
         return (root, query, cb) -> {
@@ -0,0 +1,135 @@
+package com.avangrid.gui.avangrid_backend.service;
+
+import com.avangrid.gui.avangrid_backend.exception.TranscodeBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admission control for ffmpeg encodes. At most
+ * {@code audio.transcode.per-core} encodes run per available core; further
+ * requests wait in a fair queue of {@code audio.transcode.queue.capacity}
+ * slots for up to {@code audio.transcode.queue.max-wait}. A full queue or an
+ * expired wait fails fast with {@link TranscodeBusyException}, which the API
+ * reports as {@code 429} with a {@code Retry-After} estimate.
+ */
+@Component
+@Slf4j
+public class TranscodeScheduler {
+
+    private final Semaphore slots;
+    private final int maxConcurrent;
+    private final int queueCapacity;
+    private final long maxWaitNanos;
+
+    private final AtomicInteger waiting = new AtomicInteger();
+    // exponentially weighted average encode time, seeded with a typical call recording
+    private volatile double averageEncodeNanos = TimeUnit.SECONDS.toNanos(5);
+
+    private final Timer waitTimer;
+    private final Counter queueFullRejections;
+    private final Counter timeoutRejections;
+
+    public TranscodeScheduler(MeterRegistry meterRegistry,
+                              @Value("${audio.transcode.per-core:1}") int perCore,
+                              @Value("${audio.transcode.queue.capacity:32}") int queueCapacity,
+                              @Value("${audio.transcode.queue.max-wait:10s}") Duration maxWait) {
+        this.maxConcurrent = Math.max(1, perCore * Runtime.getRuntime().availableProcessors());
+        this.slots = new Semaphore(maxConcurrent, true);
+        this.queueCapacity = queueCapacity;
+        this.maxWaitNanos = maxWait.toNanos();
+
+        this.waitTimer = meterRegistry.timer("audio.transcode.queue.wait");
+        this.queueFullRejections = meterRegistry.counter("audio.transcode.rejected", "cause", "queue-full");
+        this.timeoutRejections = meterRegistry.counter("audio.transcode.rejected", "cause", "timeout");
+        Gauge.builder("audio.transcode.queue.depth", waiting, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("audio.transcode.active", this, TranscodeScheduler::active).register(meterRegistry);
+        log.info("Transcode scheduler allows {} concurrent encodes with {} queued", maxConcurrent, queueCapacity);
+    }
+
+    /**
+     * Blocks until an encode slot is free. The returned permit must be closed
+     * once the encode finishes; closing it more than once is harmless.
+     */
+    public Permit acquire() {
+        if (waiting.incrementAndGet() > queueCapacity) {
+            waiting.decrementAndGet();
+            queueFullRejections.increment();
+            throw busy("Too many recordings are being converted; try again shortly");
+        }
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = slots.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw busy("Interrupted while waiting for a conversion slot");
+        } finally {
+            waiting.decrementAndGet();
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (!acquired) {
+            timeoutRejections.increment();
+            throw busy("Timed out waiting for a conversion slot");
+        }
+        return new Permit(System.nanoTime());
+    }
+
+    /**
+     * A slot for background work, or {@code null} unless the scheduler is
+     * idle. Never waits and never counts against the queue.
+     */
+    public Permit tryAcquireIdle() {
+        if (!isIdle() || !slots.tryAcquire()) {
+            return null;
+        }
+        return new Permit(System.nanoTime());
+    }
+
+    /** True when no encode is running or queued, so background work may take a slot. */
+    public boolean isIdle() {
+        return waiting.get() == 0 && slots.availablePermits() == maxConcurrent;
+    }
+
+    public int active() {
+        return maxConcurrent - slots.availablePermits();
+    }
+
+    /** Seconds until a slot is likely to free up for a request that queues now. */
+    int retryAfterSeconds() {
+        double rounds = Math.ceil((waiting.get() + 1) / (double) maxConcurrent);
+        long seconds = (long) Math.ceil(rounds * averageEncodeNanos / 1e9);
+        return (int) Math.max(1, Math.min(60, seconds));
+    }
+
+    private TranscodeBusyException busy(String message) {
+        return new TranscodeBusyException(message, retryAfterSeconds());
+    }
+
+    public final class Permit implements AutoCloseable {
+        private final long startNanos;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                averageEncodeNanos = 0.8 * averageEncodeNanos + 0.2 * (System.nanoTime() - startNanos);
+                slots.release();
+            }
+        }
+    }
+}
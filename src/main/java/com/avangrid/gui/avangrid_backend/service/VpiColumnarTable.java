@@ -0,0 +1,282 @@
+package com.avangrid.gui.avangrid_backend.service;
+
+import com.avangrid.gui.avangrid_backend.model.MetadataRecord;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column-oriented, read-only copy of a VPI result set. Every field gets one
+ * array over all rows. Low-cardinality columns (opco, extensionNum,
+ * channelNum, agent, ...) are dictionary encoded into {@code char[]} codes,
+ * and {@code startTime} is kept only as a primitive {@code long[]} of epoch
+ * seconds and re-formatted on output. Rows are turned back into maps one at a
+ * time, only for the page being serialized.
+ * <p>
+ * Rows are ordered by start time (records without one last), so time ranges
+ * resolve to contiguous row spans by binary search.
+ */
+public final class VpiColumnarTable implements VpiTable {
+
+    private static final String START_TIME = "startTime";
+
+    // rough per-object costs used for the session store's weight accounting
+    private static final int ARRAY_HEADER_BYTES = 16;
+    private static final int STRING_OVERHEAD_BYTES = 40;
+
+    private final int rowCount;
+    private final String[] columnNames;
+    private final Map<String, Integer> columnIndex;
+    private final Column[] columns;
+
+    private final long[] startEpochs;
+    private final boolean[] hasStartTime;
+    // start times that do not round-trip through the formatter keep their raw text
+    private final Map<Integer, String> rawStartTimes;
+    private final int startTimePosition;
+
+    private final VpiTableIndex index;
+
+    private VpiColumnarTable(int rowCount, String[] columnNames, Column[] columns, long[] startEpochs,
+                             boolean[] hasStartTime, Map<Integer, String> rawStartTimes, int startTimePosition) {
+        this.rowCount = rowCount;
+        this.columnNames = columnNames;
+        this.columns = columns;
+        this.startEpochs = startEpochs;
+        this.hasStartTime = hasStartTime;
+        this.rawStartTimes = rawStartTimes;
+        this.startTimePosition = startTimePosition;
+        this.columnIndex = new HashMap<>(columnNames.length * 2);
+        for (int i = 0; i < columnNames.length; i++) {
+            columnIndex.put(columnNames[i], i);
+        }
+        this.index = new VpiTableIndex(this);
+    }
+
+    public static VpiColumnarTable from(List<MetadataRecord> records) {
+        if (!isSortedByStartTime(records)) {
+            // scans deliver each day sorted, so this only runs for out-of-order input
+            records = new ArrayList<>(records);
+            records.sort(MetadataRecord.BY_START_TIME);
+        }
+        int rowCount = records.size();
+
+        // column order follows first appearance; startTime is tracked separately
+        LinkedHashMap<String, Integer> positions = new LinkedHashMap<>();
+        int startTimePosition = -1;
+        for (MetadataRecord record : records) {
+            for (int f = 0; f < record.getFieldCount(); f++) {
+                String name = record.getFieldName(f);
+                if (!positions.containsKey(name)) {
+                    if (START_TIME.equals(name)) {
+                        startTimePosition = positions.size();
+                    }
+                    positions.put(name, positions.size());
+                }
+            }
+        }
+
+        String[] names = positions.keySet().toArray(new String[0]);
+        String[][] raw = new String[names.length][];
+        for (int c = 0; c < names.length; c++) {
+            if (c != startTimePosition) {
+                raw[c] = new String[rowCount];
+            }
+        }
+
+        long[] startEpochs = new long[rowCount];
+        boolean[] hasStartTime = new boolean[rowCount];
+        Map<Integer, String> rawStartTimes = new HashMap<>();
+        for (int row = 0; row < rowCount; row++) {
+            MetadataRecord record = records.get(row);
+            startEpochs[row] = record.getStartEpochSecond();
+            for (int f = 0; f < record.getFieldCount(); f++) {
+                int c = positions.get(record.getFieldName(f));
+                String value = record.getFieldValue(f);
+                if (c == startTimePosition) {
+                    hasStartTime[row] = true;
+                    if (!record.hasStartTime() || !value.equals(formatStartTime(record.getStartEpochSecond()))) {
+                        rawStartTimes.put(row, value);
+                    }
+                } else {
+                    raw[c][row] = value;
+                }
+            }
+        }
+
+        Column[] columns = new Column[names.length];
+        for (int c = 0; c < names.length; c++) {
+            if (c != startTimePosition) {
+                columns[c] = Column.encode(raw[c]);
+                raw[c] = null;
+            }
+        }
+        return new VpiColumnarTable(rowCount, names, columns, startEpochs, hasStartTime, rawStartTimes,
+                startTimePosition);
+    }
+
+    @Override
+    public int rowCount() {
+        return rowCount;
+    }
+
+    /** Column names in first-appearance order, which is also the field order of {@link #rowAsMap(int)}. */
+    String[] columnNames() {
+        return columnNames.clone();
+    }
+
+    @Override
+    public boolean hasColumn(String column) {
+        return columnIndex.containsKey(column);
+    }
+
+    @Override
+    public String get(int row, String column) {
+        Integer c = columnIndex.get(column);
+        if (c == null) {
+            return null;
+        }
+        return c == startTimePosition ? startTime(row) : columns[c].get(row);
+    }
+
+    @Override
+    public VpiTableIndex index() {
+        return index;
+    }
+
+    @Override
+    public long startEpoch(int row) {
+        return startEpochs[row];
+    }
+
+    @Override
+    public Map<String, Object> rowAsMap(int row) {
+        Map<String, Object> map = new LinkedHashMap<>(columnNames.length * 2);
+        for (int c = 0; c < columnNames.length; c++) {
+            String value = c == startTimePosition ? startTime(row) : columns[c].get(row);
+            if (value != null) {
+                map.put(columnNames[c], MetadataRecord.outputValue(value));
+            }
+        }
+        return map;
+    }
+
+    @Override
+    public long estimatedBytes() {
+        long bytes = ARRAY_HEADER_BYTES + (long) rowCount * (Long.BYTES + 1);
+        bytes += (long) rawStartTimes.size() * (STRING_OVERHEAD_BYTES + 32);
+        for (Column column : columns) {
+            if (column != null) {
+                bytes += column.estimatedBytes();
+            }
+        }
+        return bytes + index.estimatedBytes();
+    }
+
+    private String startTime(int row) {
+        if (!hasStartTime[row]) {
+            return null;
+        }
+        String raw = rawStartTimes.get(row);
+        return raw != null ? raw : formatStartTime(startEpochs[row]);
+    }
+
+    private static boolean isSortedByStartTime(List<MetadataRecord> records) {
+        for (int i = 1; i < records.size(); i++) {
+            if (records.get(i - 1).getStartSortKey() > records.get(i).getStartSortKey()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String formatStartTime(long epochSecond) {
+        return VpiMediaParser.RECORD_TIME_FORMAT.format(LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC));
+    }
+
+    private abstract static class Column {
+
+        abstract String get(int row);
+
+        abstract long estimatedBytes();
+
+        /**
+         * Dictionary-encodes the values when at most half of them are distinct,
+         * otherwise keeps them as a plain array.
+         */
+        static Column encode(String[] values) {
+            Map<String, Integer> codes = new HashMap<>();
+            List<String> dictionary = new ArrayList<>();
+            int limit = Math.min(Character.MAX_VALUE - 1, Math.max(16, values.length / 2));
+            for (String value : values) {
+                if (value != null && !codes.containsKey(value)) {
+                    if (dictionary.size() >= limit) {
+                        return new PlainColumn(values);
+                    }
+                    codes.put(value, dictionary.size());
+                    dictionary.add(value);
+                }
+            }
+            char[] encoded = new char[values.length];
+            for (int row = 0; row < values.length; row++) {
+                // 0 marks an absent field, so codes are shifted by one
+                encoded[row] = values[row] == null ? 0 : (char) (codes.get(values[row]) + 1);
+            }
+            return new DictionaryColumn(dictionary.toArray(new String[0]), encoded);
+        }
+    }
+
+    private static final class DictionaryColumn extends Column {
+        private final String[] dictionary;
+        private final char[] codes;
+
+        private DictionaryColumn(String[] dictionary, char[] codes) {
+            this.dictionary = dictionary;
+            this.codes = codes;
+        }
+
+        @Override
+        String get(int row) {
+            int code = codes[row];
+            return code == 0 ? null : dictionary[code - 1];
+        }
+
+        @Override
+        long estimatedBytes() {
+            long bytes = ARRAY_HEADER_BYTES * 2 + (long) codes.length * Character.BYTES;
+            for (String value : dictionary) {
+                bytes += Integer.BYTES + STRING_OVERHEAD_BYTES + value.length();
+            }
+            return bytes;
+        }
+    }
+
+    private static final class PlainColumn extends Column {
+        private final String[] values;
+
+        private PlainColumn(String[] values) {
+            this.values = values;
+        }
+
+        @Override
+        String get(int row) {
+            return values[row];
+        }
+
+        @Override
+        long estimatedBytes() {
+            long bytes = ARRAY_HEADER_BYTES + (long) values.length * Integer.BYTES;
+            for (String value : values) {
+                if (value != null) {
+                    bytes += STRING_OVERHEAD_BYTES + value.length();
+                }
+            }
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.avangrid.gui.avangrid_backend.service;
+
+import com.avangrid.gui.avangrid_backend.model.MetadataRecord;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Streaming (StAX) parser for VPI metadata XML. Each {@code <Media>} element is
+ * turned straight into a {@link MetadataRecord} without building a tree.
+ * <p>
+ * Records have the shape the previous {@code XmlMapper} tree parsing gave them:
+ * attributes and leaf elements become fields by name, repeated elements become
+ * lists, and a nested element is JSON text for CMP and a nested object for RGE
+ * and NYSEG.
+ */
+@Component
+public class VpiMediaParser {
+
+    public static final DateTimeFormatter RECORD_TIME_FORMAT =
+            DateTimeFormatter.ofPattern("M/d/yyyy h:mm:ss a", Locale.ENGLISH);
+
+    // XMLInputFactory is thread-safe once configured, so one instance serves every scan thread
+    private static final XMLInputFactory XML_INPUT_FACTORY = createInputFactory();
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    public List<MetadataRecord> parse(String opco, byte[] xmlData) throws XMLStreamException {
+        return "CMP".equals(opco) ? parseCmp(xmlData) : parseSingle(xmlData);
+    }
+
+    /** CMP files hold many {@code <Media>} elements under {@code <Objects>}. */
+    public List<MetadataRecord> parseCmp(byte[] xmlData) throws XMLStreamException {
+        List<MetadataRecord> records = new ArrayList<>();
+        XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(new ByteArrayInputStream(xmlData));
+        try {
+            boolean inObjects = false;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String localName = reader.getLocalName();
+                    if ("Objects".equals(localName)) {
+                        inObjects = true;
+                    } else if (inObjects && "Media".equals(localName)) {
+                        records.add(readMedia(reader, true));
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && "Objects".equals(reader.getLocalName())) {
+                    inObjects = false;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return records;
+    }
+
+    /** RGE and NYSEG files hold a single media entry as the document element. */
+    public List<MetadataRecord> parseSingle(byte[] xmlData) throws XMLStreamException {
+        XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(new ByteArrayInputStream(xmlData));
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                    return List.of(readMedia(reader, false));
+                }
+            }
+            return List.of();
+        } finally {
+            reader.close();
+        }
+    }
+
+    public static long toEpochSecond(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    public static long parseStartTime(String startTime) {
+        if (startTime == null) {
+            return MetadataRecord.NO_START_TIME;
+        }
+        try {
+            return toEpochSecond(LocalDateTime.parse(startTime.trim(), RECORD_TIME_FORMAT));
+        } catch (DateTimeParseException e) {
+            return MetadataRecord.NO_START_TIME;
+        }
+    }
+
+    /** Reads the element the reader is positioned on, up to and including its end tag. */
+    private MetadataRecord readMedia(XMLStreamReader reader, boolean nestedAsText) throws XMLStreamException {
+        Map<String, Object> fields = new LinkedHashMap<>(32);
+        readAttributes(reader, fields);
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+                add(fields, name, readValue(reader));
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                break;
+            }
+        }
+
+        String[] names = new String[fields.size()];
+        String[] values = new String[fields.size()];
+        int i = 0;
+        for (Map.Entry<String, Object> field : fields.entrySet()) {
+            names[i] = field.getKey();
+            values[i] = field.getValue() instanceof String text ? text : encodeNested(field.getValue(), nestedAsText);
+            i++;
+        }
+        Object startTime = fields.get("startTime");
+        return new MetadataRecord(names, values, parseStartTime(startTime instanceof String text ? text : null));
+    }
+
+    /**
+     * The element the reader is positioned on, shaped as {@code XmlMapper.readTree}
+     * shapes it: its text when it has neither attributes nor children, otherwise a
+     * map of attributes and children with any text under {@code ""}. Repeated
+     * children become a list.
+     */
+    private Object readValue(XMLStreamReader reader) throws XMLStreamException {
+        Map<String, Object> children = null;
+        if (reader.getAttributeCount() > 0) {
+            children = new LinkedHashMap<>();
+            readAttributes(reader, children);
+        }
+        StringBuilder text = null;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if (children == null) {
+                    children = new LinkedHashMap<>();
+                }
+                String name = reader.getLocalName();
+                add(children, name, readValue(reader));
+            } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                if (text == null) {
+                    text = new StringBuilder();
+                }
+                text.append(reader.getText());
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                break;
+            }
+        }
+        if (children == null) {
+            return text == null ? "" : text.toString();
+        }
+        if (text != null && !text.toString().isBlank()) {
+            add(children, "", text.toString());
+        }
+        return children;
+    }
+
+    private void readAttributes(XMLStreamReader reader, Map<String, Object> fields) {
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            add(fields, reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+        }
+    }
+
+    /** Adds a field, turning a repeated name into a list of all its values. */
+    @SuppressWarnings("unchecked")
+    private static void add(Map<String, Object> fields, String name, Object value) {
+        Object existing = fields.putIfAbsent(name, value);
+        if (existing == null) {
+            return;
+        }
+        if (existing instanceof List<?>) {
+            ((List<Object>) existing).add(value);
+        } else {
+            List<Object> repeated = new ArrayList<>();
+            repeated.add(existing);
+            repeated.add(value);
+            fields.put(name, repeated);
+        }
+    }
+
+    /**
+     * CMP has always returned nested elements as JSON text; RGE and NYSEG return
+     * them as nested objects, so their JSON is marked for decoding on output.
+     */
+    private static String encodeNested(Object value, boolean asText) {
+        try {
+            String json = JSON.writeValueAsString(value);
+            return asText ? json : MetadataRecord.NESTED_VALUE_PREFIX + json;
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot encode nested metadata value", e);
+        }
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+}
@@ -0,0 +1,276 @@
+package com.avangrid.gui.avangrid_backend.service;
+
+import com.avangrid.gui.avangrid_backend.exception.BlobAccessException;
+import com.avangrid.gui.avangrid_backend.model.MetadataRecord;
+import com.avangrid.gui.avangrid_backend.model.VpiScanFailure;
+import com.avangrid.gui.avangrid_backend.model.VpiScanResult;
+import com.avangrid.gui.avangrid_backend.repository.AzureBlobRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Scans a VPI date range by fanning out day listings and XML downloads on
+ * virtual threads. At most {@code vpi.scan.parallelism} Azure calls are in
+ * flight per scan; results are always assembled in day order, and each day
+ * is sorted by start time, regardless of completion order.
+ * <p>
+ * Each scan has its own record budget. A day is skipped once the days before
+ * it already fill the budget, so a truncated result is always the first
+ * {@code maxRecords} records of the range. The budget is checked before each
+ * listing and each XML download, and a truncated scan interrupts whatever is
+ * still running instead of waiting for records it would discard.
+ */
+@Service
+@Slf4j
+public class VpiMetadataScanner {
+
+    private final AzureBlobRepository vpiRepository;
+    private final VpiMediaParser mediaParser;
+    private final int parallelism;
+
+    public VpiMetadataScanner(AzureBlobRepository vpiRepository, VpiMediaParser mediaParser,
+                              @Value("${vpi.scan.parallelism:16}") int parallelism) {
+        this.vpiRepository = vpiRepository;
+        this.mediaParser = mediaParser;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public VpiScanResult scan(String opco, LocalDateTime fromDate, LocalDateTime toDate, int maxRecords) {
+        return scan(opco, fromDate, toDate, maxRecords, VpiScanListener.NONE);
+    }
+
+    /**
+     * Runs the scan and reports each day to {@code listener} in day order as soon
+     * as it and all earlier days are done. If the listener throws, outstanding
+     * downloads are interrupted and the exception is rethrown.
+     */
+    public VpiScanResult scan(String opco, LocalDateTime fromDate, LocalDateTime toDate, int maxRecords,
+                              VpiScanListener listener) {
+        List<LocalDate> days = new ArrayList<>();
+        for (LocalDate day = fromDate.toLocalDate(); !day.isAfter(toDate.toLocalDate()); day = day.plusDays(1)) {
+            days.add(day);
+        }
+
+        Semaphore permits = new Semaphore(parallelism);
+        DayBudget budget = new DayBudget(days.size(), maxRecords);
+        List<MetadataRecord> records = new ArrayList<>();
+        List<VpiScanFailure> failures = new ArrayList<>();
+        boolean truncated;
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<DayResult>> dayResults = new ArrayList<>(days.size());
+            for (int i = 0; i < days.size(); i++) {
+                int dayIndex = i;
+                LocalDate day = days.get(i);
+                dayResults.add(executor.submit(() -> budget.record(dayIndex,
+                        scanDay(executor, permits, budget, dayIndex, opco, day, fromDate, toDate))));
+            }
+            try {
+                truncated = collect(opco, days, dayResults, maxRecords, records, failures, listener);
+            } catch (RuntimeException e) {
+                executor.shutdownNow();
+                throw e;
+            }
+            if (truncated) {
+                // later days are discarded; interrupt their listings and downloads rather than wait for them
+                executor.shutdownNow();
+            }
+        }
+
+        if (!failures.isEmpty()) {
+            log.warn("VPI scan for {} {} to {} completed with {} failed day(s)", opco, fromDate, toDate, failures.size());
+        }
+        return new VpiScanResult(records, failures, truncated);
+    }
+
+    /** Drains day results in day order into {@code records}; returns whether the budget truncated the range. */
+    private boolean collect(String opco, List<LocalDate> days, List<Future<DayResult>> dayResults, int maxRecords,
+                            List<MetadataRecord> records, List<VpiScanFailure> failures, VpiScanListener listener) {
+        for (int i = 0; i < days.size(); i++) {
+            DayResult dayResult;
+            try {
+                dayResult = await(dayResults.get(i));
+            } catch (ExecutionException e) {
+                LocalDate day = days.get(i);
+                dayResult = new DayResult(List.of(), new VpiScanFailure(day, buildPrefix(opco, day), 0,
+                        String.valueOf(e.getCause().getMessage())));
+            }
+            if (dayResult == DayResult.SKIPPED) {
+                return true;
+            }
+            int room = maxRecords - records.size();
+            List<MetadataRecord> kept = dayResult.records;
+            boolean full = kept.size() > room;
+            if (full) {
+                kept = kept.subList(0, room);
+            }
+            records.addAll(kept);
+            if (dayResult.failure != null) {
+                failures.add(dayResult.failure);
+            }
+            listener.onDay(days.get(i), kept, dayResult.failure);
+            if (full) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private DayResult scanDay(ExecutorService executor, Semaphore permits, DayBudget budget, int dayIndex,
+                              String opco, LocalDate day, LocalDateTime fromDate, LocalDateTime toDate) {
+        String prefix = buildPrefix(opco, day);
+        List<String> blobNames;
+        try {
+            // checked after the permit is granted: earlier days may have filled the budget while we waited
+            blobNames = withPermit(permits, () -> budget.isExhaustedBefore(dayIndex) ? null
+                    : vpiRepository.listBlobsStrict(prefix));
+        } catch (Exception e) {
+            return new DayResult(List.of(), new VpiScanFailure(day, prefix, 0, e.getMessage()));
+        }
+        if (blobNames == null) {
+            return DayResult.SKIPPED;
+        }
+
+        List<Future<List<MetadataRecord>>> downloads = new ArrayList<>();
+        for (String blobName : blobNames) {
+            if (blobName.endsWith(".xml")) {
+                downloads.add(executor.submit(() -> withPermit(permits, () -> {
+                    // as for the listing: earlier days may have filled the budget since it ran
+                    if (budget.isExhaustedBefore(dayIndex)) {
+                        return null;
+                    }
+                    byte[] xmlData = vpiRepository.getBlobContentStrict(blobName);
+                    return mediaParser.parse(opco, xmlData);
+                })));
+            }
+        }
+
+        List<MetadataRecord> dayRecords = new ArrayList<>();
+        int failedBlobs = 0;
+        String lastError = null;
+        for (Future<List<MetadataRecord>> download : downloads) {
+            try {
+                List<MetadataRecord> parsed = await(download);
+                if (parsed == null) {
+                    return DayResult.SKIPPED;
+                }
+                dayRecords.addAll(parsed);
+            } catch (ExecutionException e) {
+                failedBlobs++;
+                lastError = e.getCause().getMessage();
+            }
+        }
+
+        VpiScanFailure failure = failedBlobs == 0 ? null
+                : new VpiScanFailure(day, prefix, failedBlobs, lastError);
+        return new DayResult(sortAndTrim(dayRecords, day, fromDate, toDate), failure);
+    }
+
+    /**
+     * Sorts one day's records by start time and, on the first and last day of
+     * the range, cuts them to {@code [fromDate, toDate]} with two binary searches.
+     * Only boundary days can hold records outside the window; records without a
+     * parseable start time sort last and are dropped there.
+     */
+    static List<MetadataRecord> sortAndTrim(List<MetadataRecord> dayRecords, LocalDate day,
+                                            LocalDateTime fromDate, LocalDateTime toDate) {
+        dayRecords.sort(MetadataRecord.BY_START_TIME);
+        if (!day.equals(fromDate.toLocalDate()) && !day.equals(toDate.toLocalDate())) {
+            return dayRecords;
+        }
+        int start = firstAtOrAfter(dayRecords, VpiMediaParser.toEpochSecond(fromDate));
+        int end = firstAtOrAfter(dayRecords, VpiMediaParser.toEpochSecond(toDate) + 1);
+        return dayRecords.subList(start, Math.max(start, end));
+    }
+
+    private static int firstAtOrAfter(List<MetadataRecord> sorted, long epochSecond) {
+        int low = 0;
+        int high = sorted.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted.get(mid).getStartSortKey() < epochSecond) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private <T> T withPermit(Semaphore permits, Callable<T> call) throws Exception {
+        permits.acquire();
+        try {
+            return call.call();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private <T> T await(Future<T> future) throws ExecutionException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BlobAccessException("VPI scan interrupted");
+        }
+    }
+
+    static String buildPrefix(String opco, LocalDate date) {
+        if ("CMP".equals(opco)) {
+            return String.format("%s/%d/%d/%d/Metadata/",
+                opco, date.getYear(), date.getMonthValue(), date.getDayOfMonth());
+        } else {
+            return String.format("%s/%d/%d/%d/",
+                opco, date.getYear(), date.getMonthValue(), date.getDayOfMonth());
+        }
+    }
+
+    private static final class DayResult {
+        private static final DayResult SKIPPED = new DayResult(List.of(), null);
+
+        private final List<MetadataRecord> records;
+        private final VpiScanFailure failure;
+
+        private DayResult(List<MetadataRecord> records, VpiScanFailure failure) {
+            this.records = records;
+            this.failure = failure;
+        }
+    }
+
+    /** Tracks completed record counts per day so later days can be skipped once the budget is met. */
+    private static final class DayBudget {
+        private final AtomicIntegerArray dayCounts;
+        private final int maxRecords;
+
+        private DayBudget(int days, int maxRecords) {
+            this.dayCounts = new AtomicIntegerArray(days);
+            this.maxRecords = maxRecords;
+        }
+
+        private boolean isExhaustedBefore(int dayIndex) {
+            long known = 0;
+            for (int i = 0; i < dayIndex; i++) {
+                known += dayCounts.get(i);
+            }
+            return known >= maxRecords;
+        }
+
+        private DayResult record(int dayIndex, DayResult result) {
+            dayCounts.set(dayIndex, result.records.size());
+            return result;
+        }
+    }
+}
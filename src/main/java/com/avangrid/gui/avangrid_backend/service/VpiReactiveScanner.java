@@ -0,0 +1,170 @@
+package com.avangrid.gui.avangrid_backend.service;
+
+import com.avangrid.gui.avangrid_backend.model.MetadataRecord;
+import com.avangrid.gui.avangrid_backend.model.VpiScanFailure;
+import com.avangrid.gui.avangrid_backend.model.VpiScanResult;
+import com.avangrid.gui.avangrid_backend.repository.AzureBlobAsyncRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Non-blocking variant of {@link VpiMetadataScanner} on the async Azure client.
+ * Days and, within a day, XML blobs are fetched with {@code flatMapSequential},
+ * so results keep day order; each day is then sorted by start time. Parsing
+ * runs on the parallel scheduler, never on the Netty I/O threads.
+ * <p>
+ * At most {@code vpi.reactive.day-concurrency} days are in flight, each with at
+ * most {@code vpi.reactive.concurrency} downloads. Once the record budget is
+ * met the pipeline is cancelled, which also cancels outstanding downloads.
+ */
+@Service
+@Slf4j
+public class VpiReactiveScanner {
+
+    private final AzureBlobAsyncRepository asyncRepository;
+    private final VpiMediaParser mediaParser;
+    private final int concurrency;
+    private final int dayConcurrency;
+    private final int prefetch;
+
+    public VpiReactiveScanner(AzureBlobAsyncRepository asyncRepository, VpiMediaParser mediaParser,
+                              @Value("${vpi.reactive.concurrency:16}") int concurrency,
+                              @Value("${vpi.reactive.day-concurrency:4}") int dayConcurrency,
+                              @Value("${vpi.reactive.prefetch:32}") int prefetch) {
+        this.asyncRepository = asyncRepository;
+        this.mediaParser = mediaParser;
+        this.concurrency = Math.max(1, concurrency);
+        this.dayConcurrency = Math.max(1, dayConcurrency);
+        this.prefetch = Math.max(1, prefetch);
+    }
+
+    public Mono<VpiScanResult> scan(String opco, LocalDateTime fromDate, LocalDateTime toDate, int maxRecords) {
+        List<LocalDate> days = new ArrayList<>();
+        for (LocalDate day = fromDate.toLocalDate(); !day.isAfter(toDate.toLocalDate()); day = day.plusDays(1)) {
+            days.add(day);
+        }
+
+        return Mono.defer(() -> {
+            ScanAccumulator accumulator = new ScanAccumulator(maxRecords);
+            return Flux.fromIterable(days)
+                    .flatMapSequential(day -> scanDay(opco, day, fromDate, toDate),
+                            dayConcurrency, prefetch)
+                    .takeUntil(accumulator::add)
+                    .then(Mono.fromSupplier(accumulator::toResult));
+        }).doOnNext(result -> {
+            if (!result.getFailures().isEmpty()) {
+                log.warn("Reactive VPI scan for {} {} to {} completed with {} failed day(s)",
+                        opco, fromDate, toDate, result.getFailures().size());
+            }
+        });
+    }
+
+    private Mono<DayResult> scanDay(String opco, LocalDate day, LocalDateTime fromDate, LocalDateTime toDate) {
+        String prefix = VpiMetadataScanner.buildPrefix(opco, day);
+        return asyncRepository.listBlobs(prefix)
+                .flatMap(blobNames -> Flux.fromIterable(blobNames)
+                        .filter(blobName -> blobName.endsWith(".xml"))
+                        .flatMapSequential(blobName -> parseBlob(opco, blobName), concurrency, prefetch)
+                        .collect(() -> new DayResult(day, prefix), DayResult::add)
+                        .map(result -> result.sortAndTrim(fromDate, toDate)))
+                .onErrorResume(e -> Mono.just(DayResult.listingFailed(day, prefix, e.getMessage())));
+    }
+
+    private Mono<BlobResult> parseBlob(String opco, String blobName) {
+        return asyncRepository.getBlobContent(blobName)
+                .publishOn(Schedulers.parallel())
+                .map(xmlData -> {
+                    try {
+                        return new BlobResult(mediaParser.parse(opco, xmlData), null);
+                    } catch (Exception e) {
+                        return new BlobResult(List.of(), String.valueOf(e.getMessage()));
+                    }
+                })
+                .onErrorResume(e -> Mono.just(new BlobResult(List.of(), String.valueOf(e.getMessage()))));
+    }
+
+    private record BlobResult(List<MetadataRecord> records, String error) {
+    }
+
+    private static final class DayResult {
+        private final LocalDate day;
+        private final String prefix;
+        private List<MetadataRecord> records = new ArrayList<>();
+        private int failedBlobs;
+        private String lastError;
+        private VpiScanFailure listingFailure;
+
+        private DayResult(LocalDate day, String prefix) {
+            this.day = day;
+            this.prefix = prefix;
+        }
+
+        private static DayResult listingFailed(LocalDate day, String prefix, String message) {
+            DayResult result = new DayResult(day, prefix);
+            result.listingFailure = new VpiScanFailure(day, prefix, 0, message);
+            return result;
+        }
+
+        private void add(BlobResult blob) {
+            if (blob.error() != null) {
+                failedBlobs++;
+                lastError = blob.error();
+                return;
+            }
+            records.addAll(blob.records());
+        }
+
+        private DayResult sortAndTrim(LocalDateTime fromDate, LocalDateTime toDate) {
+            records = VpiMetadataScanner.sortAndTrim(records, day, fromDate, toDate);
+            return this;
+        }
+
+        private VpiScanFailure failure() {
+            if (listingFailure != null) {
+                return listingFailure;
+            }
+            return failedBlobs == 0 ? null : new VpiScanFailure(day, prefix, failedBlobs, lastError);
+        }
+    }
+
+    /** Collects days in order up to the record budget; only ever touched by the sequential downstream. */
+    private static final class ScanAccumulator {
+        private final int maxRecords;
+        private List<MetadataRecord> records = new ArrayList<>();
+        private final List<VpiScanFailure> failures = new ArrayList<>();
+        private boolean truncated;
+
+        private ScanAccumulator(int maxRecords) {
+            this.maxRecords = maxRecords;
+        }
+
+        /** Adds a day and returns {@code true} once the budget is full and the scan should stop. */
+        private boolean add(DayResult day) {
+            VpiScanFailure failure = day.failure();
+            if (failure != null) {
+                failures.add(failure);
+            }
+            int room = maxRecords - records.size();
+            if (day.records.size() > room) {
+                records.addAll(day.records.subList(0, room));
+                truncated = true;
+            } else {
+                records.addAll(day.records);
+            }
+            return truncated;
+        }
+
+        private VpiScanResult toResult() {
+            return new VpiScanResult(records, failures, truncated);
+        }
+    }
+}
@@ -4,45 +4,51 @@ import com.avangrid.gui.avangrid_backend.exception.BlobAccessException;
 import com.avangrid.gui.avangrid_backend.exception.InvalidRequestException;
 import com.avangrid.gui.avangrid_backend.exception.RecordingNotFoundException;
 import com.avangrid.gui.avangrid_backend.exception.RecordingProcessingException;
+import com.avangrid.gui.avangrid_backend.exception.TranscodeBusyException;
 import com.avangrid.gui.avangrid_backend.model.*;
 
-import com.avangrid.gui.avangrid_backend.repository.AzureBlobRepository;
 import com.avangrid.gui.avangrid_backend.repository.RecordingsRepo;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.util.StreamUtils;
 import org.springframework.data.domain.*;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
-import ws.schild.jave.Encoder;
-import ws.schild.jave.MultimediaObject;
-import ws.schild.jave.encode.AudioAttributes;
-import ws.schild.jave.encode.EncodingAttributes;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.*;
 import java.io.*;
 import java.util.List;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 @Service
 public class VpiRecordingService {
 
+    // file_name is the primary key, so this order is total and a row is never skipped or repeated
+    private static final Sort TABLE_ORDER = Sort.by(Sort.Order.desc("dateAdded"), Sort.Order.desc("fileName"));
+
     private final RecordingsRepo recordingsRepo;
 
-    private final AzureBlobRepository vpiAzureRepository;
+    private final RecordingBlobResolver blobResolver;
+
+    private final AudioTranscodeService audioTranscodeService;
+
+    private final RecordingArchiveWriter archiveWriter;
 
-    public VpiRecordingService(RecordingsRepo recordingsRepo,AzureBlobRepository vpiAzureRepository ) {
+    private final RecordingExportJobs exportJobs;
+
+    public VpiRecordingService(RecordingsRepo recordingsRepo,RecordingBlobResolver blobResolver,
+                               AudioTranscodeService audioTranscodeService, RecordingArchiveWriter archiveWriter,
+                               RecordingExportJobs exportJobs) {
         this.recordingsRepo = recordingsRepo;
-        this.vpiAzureRepository = vpiAzureRepository;
+        this.blobResolver = blobResolver;
+        this.audioTranscodeService = audioTranscodeService;
+        this.archiveWriter = archiveWriter;
+        this.exportJobs = exportJobs;
     }
 
     public VpiSearchResponse getTableData( VpiSearchRequest request){
@@ -62,24 +68,16 @@ public class VpiRecordingService {
         int pageSize = request.getPagination().getPageSize() > 0 ? request.getPagination().getPageSize() : 20;
         int safePage = (pageNumber > 0 ? pageNumber - 1 : 0);
 
-        Pageable pageable = PageRequest.of(safePage, pageSize, Sort.by("dateAdded").descending());
+        if (request.getPagination().getContinuationToken() != null) {
+            return getTableDataAfter(spec, request.getPagination(), pageSize);
+        }
+
+        Pageable pageable = PageRequest.of(safePage, pageSize, TABLE_ORDER);
         Page<Recording> pageResult = recordingsRepo.findAll(spec, pageable);
 
         List<Map<String, Object>> records = new ArrayList<>();
         for (Recording rec : pageResult.getContent()) {
-            Map<String, Object> map = new LinkedHashMap<>();
-            map.put("fileName", rec.getFileName());
-            map.put("extensionNum", rec.getExtensionNum());
-            map.put("objectId", rec.getObjectId());
-            map.put("channelNum", rec.getChannelNum());
-            map.put("aniAliDigits", rec.getAniAliDigits());
-            map.put("name", rec.getName());
-            map.put("dateAdded", rec.getDateAdded());
-            map.put("opco",rec.getOpco());
-            map.put("agentID",rec.getAgentID());
-            map.put("duration",rec.getDuration());
-            map.put("direction",rec.getDirection());
-            records.add(map);
+            records.add(toRow(rec));
         }
 
         response.setData(records);
@@ -95,6 +93,92 @@ public class VpiRecordingService {
         return response;
     }
 
+    /**
+     * Keyset paging: seeks past the last row of the previous page on
+     * (dateAdded, fileName) instead of skipping OFFSET rows, so a deep page
+     * costs the same as the first. One extra row is read to tell whether
+     * another page follows, and matching rows are only counted when
+     * {@code exactCount} asks for it; otherwise the totals are {@code -1}.
+     */
+    private VpiSearchResponse getTableDataAfter(Specification<Recording> spec, PaginationRequest pagination,
+                                                int pageSize) {
+        Specification<Recording> pageSpec = spec;
+        String token = pagination.getContinuationToken();
+        if (!token.isEmpty()) {
+            Recording last = decodeContinuationToken(token);
+            pageSpec = spec.and(RecordingSpecifications.seekBefore(last.getDateAdded(), last.getFileName()));
+        }
+        List<Recording> rows = recordingsRepo.findBy(pageSpec,
+                query -> query.sortBy(TABLE_ORDER).limit(pageSize + 1).all());
+        boolean hasMore = rows.size() > pageSize;
+        if (hasMore) {
+            rows = rows.subList(0, pageSize);
+        }
+
+        List<Map<String, Object>> records = new ArrayList<>(rows.size());
+        for (Recording rec : rows) {
+            records.add(toRow(rec));
+        }
+
+        VpiSearchResponse response = new VpiSearchResponse();
+        response.setData(records);
+        response.setMessage("Success");
+        response.setStatus("200");
+
+        PaginationResponse pageResponse = new PaginationResponse();
+        pageResponse.setPageNumber(pagination.getPageNumber());
+        pageResponse.setPageSize(pageSize);
+        if (pagination.isExactCount()) {
+            long total = recordingsRepo.count(spec);
+            pageResponse.setTotalRecords(total);
+            pageResponse.setTotalPages((int) ((total + pageSize - 1) / pageSize));
+        } else {
+            pageResponse.setTotalRecords(-1);
+            pageResponse.setTotalPages(-1);
+        }
+        pageResponse.setNextContinuationToken(hasMore ? encodeContinuationToken(rows.getLast()) : null);
+        response.setPagination(pageResponse);
+        return response;
+    }
+
+    static String encodeContinuationToken(Recording last) {
+        String position = last.getDateAdded() + "|" + last.getFileName();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** The position a token points after, as a Recording carrying only dateAdded and fileName. */
+    static Recording decodeContinuationToken(String token) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = position.indexOf('|');
+            if (separator < 0) {
+                throw new InvalidRequestException("Invalid continuation token");
+            }
+            Recording last = new Recording();
+            last.setDateAdded(LocalDateTime.parse(position.substring(0, separator)));
+            last.setFileName(position.substring(separator + 1));
+            return last;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new InvalidRequestException("Invalid continuation token");
+        }
+    }
+
+    private static Map<String, Object> toRow(Recording rec) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("fileName", rec.getFileName());
+        map.put("extensionNum", rec.getExtensionNum());
+        map.put("objectId", rec.getObjectId());
+        map.put("channelNum", rec.getChannelNum());
+        map.put("aniAliDigits", rec.getAniAliDigits());
+        map.put("name", rec.getName());
+        map.put("dateAdded", rec.getDateAdded());
+        map.put("opco",rec.getOpco());
+        map.put("agentID",rec.getAgentID());
+        map.put("duration",rec.getDuration());
+        map.put("direction",rec.getDirection());
+        return map;
+    }
+
     private Specification<Recording> buildSpecification(VpiSearchRequest request) {
 
         Specification<Recording> spec = Specification.where(null);
@@ -141,129 +225,69 @@ public class VpiRecordingService {
         return recordingMetadata.getFirst();
     }
 
-    public ResponseEntity<ByteArrayResource> getRecordingAsMp3(RecordingRequest request) {
+    public ResponseEntity<StreamingResponseBody> getRecordingAsMp3(RecordingRequest request, String accept, String range) {
 
         validateRequest(request);
         LocalDateTime fileDate = parseDateTime(request.getDate());
-        String prefix = String.format("%s/%d/%d/%d/%s",
-                request.getOpco(),
-                    fileDate.getYear(),
-                    fileDate.getMonthValue(),
-                    fileDate.getDayOfMonth(),
-                request.getFilename());
-
-        List<String> blobs;
+        RecordingBlobResolver.Key key = RecordingBlobResolver.Key.of(request.getOpco(), fileDate, request.getFilename());
+
+        String blobName;
         try {
-            blobs = vpiAzureRepository.listBlobs(prefix);
+            blobName = blobResolver.resolve(key);
         } catch (Exception e) {
-            throw new BlobAccessException("Failed to list blobs for prefix: " + prefix);
+            throw new BlobAccessException("Failed to find blob for recording: " + key.prefix());
         }
-        for (String blobName : blobs) {
-            if (blobName.endsWith(".wav")) {
-                byte[] wavData = vpiAzureRepository.getBlobContent(blobName);
-                try {
-                    byte[] mp3Data = convertWavToMp3(wavData);
-                    String mp3Filename = request.getFilename().replace(".wav", ".mp3");
-                    HttpHeaders headers = new HttpHeaders();
-                    headers.setContentType(MediaType.parseMediaType("audio/mpeg"));
-                    headers.setContentDispositionFormData("inline", mp3Filename);
-                    ByteArrayResource resource = new ByteArrayResource(mp3Data);
-                    return ResponseEntity.ok()
-                                .headers(headers)
-                                .body(resource);
-
-                    } catch (Exception e) {
-                        throw new RecordingProcessingException(
-                                "Error Converting wav to MP3 " + e.getMessage());
-                    }
-                }
+        if (blobName != null) {
+            try {
+                AudioPlayback playback =
+                        audioTranscodeService.playback(blobName, request.getOpco(), accept, range);
+                return playback.toResponseEntity(request.getFilename());
+
+            } catch (TranscodeBusyException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RecordingProcessingException(
+                        "Error Converting wav to MP3 " + e.getMessage());
             }
+        }
         throw new RecordingNotFoundException("Recording not found with OPCO=" + request.getOpco() +" and filename="+request.getFilename());
     }
 
-    private byte[] convertWavToMp3(byte[] wavData) throws Exception {
-        Path tempDir = Files.createTempDirectory("audio_conversion_");
-        String uniqueId = UUID.randomUUID().toString();
-        Path inputFile = tempDir.resolve("input_" + uniqueId + ".wav");
-        Path outputFile = tempDir.resolve("output_" + uniqueId + ".mp3");
-
-        try {
-            // Create temporary directory
-            Files.write(inputFile, wavData);
-            MultimediaObject source = new MultimediaObject(inputFile.toFile());
-
-            AudioAttributes audio = new AudioAttributes();
-            audio.setCodec("libmp3lame");
-            audio.setBitRate(128000);
-            audio.setSamplingRate(44100);
-            audio.setChannels(2);
-
-            EncodingAttributes attrs = new EncodingAttributes();
-            attrs.setOutputFormat("mp3");
-            attrs.setAudioAttributes(audio);
-
-            Encoder encoder = new Encoder();
-            encoder.encode(source, outputFile.toFile(), attrs);
-
-            return Files.readAllBytes(outputFile);
-        } finally {
-            // Clean up temporary files
-            Files.deleteIfExists(inputFile);
-            Files.deleteIfExists(outputFile);
-            Files.deleteIfExists(tempDir);
+    /**
+     * Streams a ZIP of the requested recordings. Requests are validated before
+     * anything is sent; recordings that then fail are listed in the archive's
+     * manifest instead of aborting it.
+     */
+    public ResponseEntity<StreamingResponseBody> downloadZip(List<RecordingRequest> requests) {
+        for (RecordingRequest req : requests) {
+            validateRequest(req);
+            parseDateTime(req.getDate());
         }
-    }
 
-    public ResponseEntity<byte[]> downloadZip(List<RecordingRequest> requests) {
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             ZipOutputStream zos = new ZipOutputStream(baos)) {
-
-            for (RecordingRequest req : requests) {
-                validateRequest(req);
-                LocalDateTime fileDate = parseDateTime(req.getDate());
-                String prefix = String.format("%s/%d/%d/%d/%s",
-                        req.getOpco(),
-                        fileDate.getYear(),
-                        fileDate.getMonthValue(),
-                        fileDate.getDayOfMonth(),
-                        req.getFilename());
-
-                // Find matching blob (wav only)
-                List<String> blobs = vpiAzureRepository.listBlobs(prefix);
-                if (blobs == null || blobs.isEmpty()) {
-                    throw new RecordingNotFoundException("No blobs found for prefix: " + prefix);
-                }
-                for (String blobName : blobs) {
-                    if (blobName.endsWith(".wav")) {
-                        zos.putNextEntry(new ZipEntry(req.getFilename())); // filename in ZIP
-
-                        try (InputStream blobStream = vpiAzureRepository.getBlobStream(blobName)) {
-                            StreamUtils.copy(blobStream, zos);
-                        }
-
-                        zos.closeEntry();
-                    }
-                }
-            }
-
-            zos.finish();
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
-            headers.setContentDispositionFormData("attachment", "recordings.zip");
-
-            return new ResponseEntity<>(baos.toByteArray(), headers, HttpStatus.OK);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.setContentDispositionFormData("attachment", "recordings.zip");
+        StreamingResponseBody body = out -> archiveWriter.write(requests, out);
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
 
+    public ExportJobStatus submitExportJob(List<RecordingRequest> requests) {
+        if (requests == null) {
+            throw new InvalidRequestException("Request cannot be null");
         }
-        catch (InvalidRequestException | RecordingNotFoundException e) {
-            throw e;
-        }
-        catch (IOException e) {
-            throw new RecordingProcessingException("Error processing ZIP file :"+e);
-        }
-        catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(("Failed to generate ZIP: " + e.getMessage()).getBytes());
+        for (RecordingRequest req : requests) {
+            validateRequest(req);
+            parseDateTime(req.getDate());
         }
+        return exportJobs.submit(requests);
+    }
+
+    public ExportJobStatus getExportJobStatus(String jobId) {
+        return exportJobs.status(jobId);
+    }
+
+    public ResponseEntity<StreamingResponseBody> downloadExportJob(String jobId, String range) {
+        return exportJobs.download(jobId, range);
     }
 
     private void validateRequest(RecordingRequest req) {
@@ -0,0 +1,23 @@
+package com.avangrid.gui.avangrid_backend.service;
+
+import com.avangrid.gui.avangrid_backend.model.MetadataRecord;
+import com.avangrid.gui.avangrid_backend.model.VpiScanFailure;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Receives each day of a {@link VpiMetadataScanner} scan as soon as it and every
+ * earlier day are complete, so callers see records in final result order.
+ */
+@FunctionalInterface
+public interface VpiScanListener {
+
+    VpiScanListener NONE = (day, records, failure) -> { };
+
+    /**
+     * @param records the day's records that made it into the result (already trimmed to the record budget)
+     * @param failure the day's failure, or {@code null} if the day was read completely
+     */
+    void onDay(LocalDate day, List<MetadataRecord> records, VpiScanFailure failure);
+}
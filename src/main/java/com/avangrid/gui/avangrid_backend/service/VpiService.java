@@ -1,61 +1,79 @@
 package com.avangrid.gui.avangrid_backend.service;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.time.LocalDate;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
-import java.util.ArrayList;
+import java.time.temporal.ChronoUnit;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.TreeMap;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.util.StreamUtils;
-import ws.schild.jave.Encoder;
-import ws.schild.jave.MultimediaObject;
-import ws.schild.jave.encode.AudioAttributes;
-import ws.schild.jave.encode.EncodingAttributes;
 
 
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 
+import com.avangrid.gui.avangrid_backend.exception.TranscodeBusyException;
+import com.avangrid.gui.avangrid_backend.model.MetadataRecord;
+import com.avangrid.gui.avangrid_backend.model.VpiScanResult;
 import com.avangrid.gui.avangrid_backend.repository.AzureBlobRepository;
 
-
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 @Service
+@Slf4j
 public class VpiService {
     
     @Autowired
     private AzureBlobRepository vpiRepository;
-    
-    private final ConcurrentHashMap<String, List<Map<String, Object>>> sessionCache = new ConcurrentHashMap<>();
-    private final Map<String, Object> cacheSessionFilter = new ConcurrentHashMap<>();
-    private volatile int recordsCount = 0;
-    private static final int MAX_RECORDS = 10000;
+
+    @Autowired
+    private VpiMetadataScanner metadataScanner;
+
+    @Autowired
+    private VpiReactiveScanner reactiveScanner;
+
+    @Autowired
+    private VpiSessionStore sessionStore;
+
+    @Autowired
+    private VpiSessionSpiller sessionSpiller;
+
+    @Autowired
+    private AudioTranscodeService audioTranscodeService;
+
+    @Autowired
+    private RecordingBlobResolver blobResolver;
+
+    @Value("${vpi.scan.max-records-per-request:10000}")
+    private int maxRecordsPerRequest;
 
 
     public Map<String, Object> getMetadataInRange(String fromDateStr, String toDateStr, 
-                                                 String opco, int pageNumber, int pageSize, String sessionId) {
+                                                 String opco, int pageNumber, int pageSize, String sessionId,
+                                                 String sortBy, String order) {
         
         // Parse and validate dates
         LocalDateTime fromDate = parseDateTime(fromDateStr);
@@ -64,56 +82,88 @@ public class VpiService {
         validateDateRange(fromDate, toDate);
         validateOpco(opco);
         validatePagination(pageNumber, pageSize);
-        
-        List<Map<String, Object>> filteredMetadata;
+        VpiSortField sortField = parseSortField(sortBy);
+        boolean descending = parseDescending(order);
         
         // Reuse session if available
-        if (sessionId != null && sessionCache.containsKey(sessionId)) {
-            filteredMetadata = sessionCache.get(sessionId);
-        } else {
-            // Fresh request: generate metadata and create a session
-            filteredMetadata = new ArrayList<>();
-            LocalDate currentDate = fromDate.toLocalDate();
-            
-            while (!currentDate.isAfter(toDate.toLocalDate()) && recordsCount < MAX_RECORDS) {
-                String prefix = buildPrefix(opco, currentDate);
-                List<String> blobNames = vpiRepository.listBlobs(prefix);
-                
-                for (String blobName : blobNames) {
-                    if (blobName.endsWith(".xml")) {
-                        byte[] xmlData = vpiRepository.getBlobContent(blobName);
-                        List<Map<String, Object>> records = opco.equals("CMP") ? 
-                            parseXmlCmp(xmlData) : parseXmlFormat(xmlData);
-                        
-                        if (currentDate.equals(fromDate.toLocalDate()) || currentDate.equals(toDate.toLocalDate())) {
-                            // Filter by time for boundary dates
-                            for (Map<String, Object> record : records) {
-                                if (isRecordInTimeRange(record, fromDate, toDate)) {
-                                    filteredMetadata.add(record);
-                                    
-                                }
-                            }
-                        } else {
-                            // Add all records for dates in between
-                            filteredMetadata.addAll(records);
-                        }
-                        
-                        recordsCount += records.size();
-                    }
-                }
-                currentDate = currentDate.plusDays(1);
-            }
-            
-            sessionId = UUID.randomUUID().toString();
-            sessionCache.put(sessionId, filteredMetadata);
+        VpiSession session = reuseRangeSession(sessionId, fromDate, toDate);
+        if (session == null) {
+            // Fresh request: scan the range and create a session
+            VpiScanResult scan = metadataScanner.scan(opco, fromDate, toDate, maxRecordsPerRequest);
+            session = storeRangeSession(opco, fromDate, toDate, scan);
         }
         
+        return pageResponse(session, pageNumber, pageSize, sortField, descending);
+    }
+
+    /**
+     * Reactive variant of {@link #getMetadataInRange}: the scan runs on the async
+     * Azure client without holding a request thread, and the response has the
+     * same shape, so its {@code session_id} works with paging and {@code /vpi/filter}.
+     */
+    public Mono<Map<String, Object>> getMetadataInRangeReactive(String fromDateStr, String toDateStr,
+                                                               String opco, int pageNumber, int pageSize, String sessionId,
+                                                               String sortBy, String order) {
+        LocalDateTime fromDate = parseDateTime(fromDateStr);
+        LocalDateTime toDate = parseDateTime(toDateStr);
+        
+        validateDateRange(fromDate, toDate);
+        validateOpco(opco);
+        validatePagination(pageNumber, pageSize);
+        VpiSortField sortField = parseSortField(sortBy);
+        boolean descending = parseDescending(order);
+        
+        VpiSession cached = reuseRangeSession(sessionId, fromDate, toDate);
+        Mono<VpiSession> session = cached != null ? Mono.just(cached)
+                : reactiveScanner.scan(opco, fromDate, toDate, maxRecordsPerRequest)
+                        // building, indexing and spilling the table blocks, so keep it off the event loop
+                        .flatMap(scan -> Mono.fromCallable(() -> storeRangeSession(opco, fromDate, toDate, scan))
+                                .subscribeOn(Schedulers.boundedElastic()));
+        return session.map(s -> pageResponse(s, pageNumber, pageSize, sortField, descending));
+    }
+
+    /**
+     * Returns the stored session for {@code sessionId} if it can answer
+     * {@code [fromDate, toDate]}: as is when the range matches, or as a new
+     * binary-searched window when the range lies inside it. Returns
+     * {@code null} when the range needs a fresh scan.
+     */
+    private VpiSession reuseRangeSession(String sessionId, LocalDateTime fromDate, LocalDateTime toDate) {
+        VpiSession session = sessionStore.get(sessionId);
+        if (session == null || session.getFromDate() == null) {
+            // filter results and seeded sessions carry no range of their own
+            return session;
+        }
+        if (fromDate.equals(session.getFromDate()) && toDate.equals(session.getToDate())) {
+            return session;
+        }
+        if (!session.covers(fromDate, toDate)) {
+            return null;
+        }
+        VpiSession window = session.window(UUID.randomUUID().toString(), fromDate, toDate);
+        sessionStore.put(window);
+        return window;
+    }
+
+    /** The session's sort permutation; one computed by this call is charged to the session in the store. */
+    private int[] sortOrder(VpiSession session, VpiSortField sortField, boolean descending) {
+        long weight = session.weight();
+        int[] order = session.sortOrder(sortField, descending);
+        if (session.weight() != weight) {
+            sessionStore.reweigh(session);
+        }
+        return order;
+    }
+
+    private Map<String, Object> pageResponse(VpiSession session, int pageNumber, int pageSize,
+                                             VpiSortField sortField, boolean descending) {
         // Pagination
         int startIdx = (pageNumber - 1) * pageSize;
-        int endIdx = Math.min(startIdx + pageSize, filteredMetadata.size());
-        List<Map<String, Object>> pageData = filteredMetadata.subList(startIdx, endIdx);
+        int endIdx = Math.min(startIdx + pageSize, session.size());
+        int[] order = sortField != null ? sortOrder(session, sortField, descending) : null;
+        List<Map<String, Object>> pageData = session.page(startIdx, endIdx, order);
         
-        int totalRecords = filteredMetadata.size();
+        int totalRecords = session.size();
         int totalPages = (totalRecords + pageSize - 1) / pageSize;
         
         Map<String, Object> response = new HashMap<>();
@@ -122,11 +172,123 @@ public class VpiService {
         response.put("page_size", pageSize);
         response.put("total_records", totalRecords);
         response.put("total_pages", totalPages);
-        response.put("session_id", sessionId);
+        response.put("session_id", session.getId());
+        response.put("truncated", session.isTruncated());
+        response.put("record_limit", maxRecordsPerRequest);
+        if (session.getFailures() != null && !session.getFailures().isEmpty()) {
+            response.put("failed_days", session.getFailures());
+        }
+        putSort(response, sortField, descending);
         
         return response;
     }
+
+    private VpiSortField parseSortField(String sortBy) {
+        if (sortBy == null || sortBy.isBlank()) {
+            return null;
+        }
+        VpiSortField field = VpiSortField.fromParam(sortBy.trim());
+        if (field == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Invalid `sort_by` value. Must be 'startTime', 'duration', 'extensionNum', or 'name'");
+        }
+        return field;
+    }
+
+    private boolean parseDescending(String order) {
+        if (order == null || order.isBlank() || order.trim().equalsIgnoreCase("asc")) {
+            return false;
+        }
+        if (order.trim().equalsIgnoreCase("desc")) {
+            return true;
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid `order` value. Must be 'asc' or 'desc'");
+    }
+
+    private void putSort(Map<String, Object> response, VpiSortField sortField, boolean descending) {
+        if (sortField != null) {
+            response.put("sort_by", sortField.getParam());
+            response.put("order", descending ? "desc" : "asc");
+        }
+    }
     
+    /**
+     * Validates a range request up front, so streaming endpoints can still answer
+     * with a plain 400 before the response is committed.
+     */
+    public void validateRangeRequest(String fromDateStr, String toDateStr, String opco) {
+        LocalDateTime fromDate = parseDateTime(fromDateStr);
+        LocalDateTime toDate = parseDateTime(toDateStr);
+        validateDateRange(fromDate, toDate);
+        validateOpco(opco);
+    }
+
+    /**
+     * Streams a range scan to {@code sink} while it runs: a {@code record} event
+     * per record in final session order, a {@code progress} event per completed
+     * day, and a closing {@code complete} event carrying the {@code session_id}
+     * under which the full result was cached for paging and {@code /vpi/filter}.
+     */
+    public void streamMetadataInRange(String fromDateStr, String toDateStr, String opco, VpiStreamSink sink)
+            throws IOException {
+        LocalDateTime fromDate = parseDateTime(fromDateStr);
+        LocalDateTime toDate = parseDateTime(toDateStr);
+        validateDateRange(fromDate, toDate);
+        validateOpco(opco);
+
+        long totalDays = ChronoUnit.DAYS.between(fromDate.toLocalDate(), toDate.toLocalDate()) + 1;
+        long[] progress = new long[2]; // completed days, records sent
+        VpiScanResult scan;
+        try {
+            scan = metadataScanner.scan(opco, fromDate, toDate, maxRecordsPerRequest, (day, records, failure) -> {
+                try {
+                    for (MetadataRecord record : records) {
+                        sink.send("record", record);
+                    }
+                    progress[0]++;
+                    progress[1] += records.size();
+                    Map<String, Object> event = new LinkedHashMap<>();
+                    event.put("date", day);
+                    event.put("day_records", records.size());
+                    event.put("days_completed", progress[0]);
+                    event.put("days_total", totalDays);
+                    event.put("records_sent", progress[1]);
+                    if (failure != null) {
+                        event.put("failure", failure);
+                    }
+                    sink.send("progress", event);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        VpiSession session = storeRangeSession(opco, fromDate, toDate, scan);
+        Map<String, Object> complete = new LinkedHashMap<>();
+        complete.put("session_id", session.getId());
+        complete.put("total_records", session.size());
+        complete.put("truncated", session.isTruncated());
+        complete.put("record_limit", maxRecordsPerRequest);
+        complete.put("failed_days", session.getFailures());
+        sink.send("complete", complete);
+    }
+
+    private VpiSession storeRangeSession(String opco, LocalDateTime fromDate, LocalDateTime toDate, VpiScanResult scan) {
+        VpiSession session = VpiSession.builder()
+                .id(UUID.randomUUID().toString())
+                .opco(opco)
+                .fromDate(fromDate)
+                .toDate(toDate)
+                .table(sessionSpiller.maybeSpill(VpiColumnarTable.from(scan.getRecords())))
+                .failures(scan.getFailures())
+                .truncated(scan.isTruncated())
+                .build();
+        sessionStore.put(session);
+        return session;
+    }
+
     private LocalDateTime parseDateTime(String dateStr) {
         try {
             DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
@@ -157,90 +319,6 @@ public class VpiService {
         }
     }
     
-    private String buildPrefix(String opco, LocalDate date) {
-        if ("CMP".equals(opco)) {
-            return String.format("%s/%d/%d/%d/Metadata/", 
-                opco, date.getYear(), date.getMonthValue(), date.getDayOfMonth());
-        } else {
-            return String.format("%s/%d/%d/%d/", 
-                opco, date.getYear(), date.getMonthValue(), date.getDayOfMonth());
-        }
-    }
-    
-    private List<Map<String, Object>> parseXmlCmp(byte[] xmlData) {
-        List<Map<String, Object>> metadataList = new ArrayList<>();
-    try {
-        XmlMapper xmlMapper = new XmlMapper();
-        JsonNode root = xmlMapper.readTree(xmlData);
-        JsonNode mediaNodes = root.path("Objects").path("Media");
-
-        if (mediaNodes.isArray()) {
-            for (JsonNode media : mediaNodes) {
-                Map<String, Object> mediaData = new HashMap<>();
-                // Add attributes
-                media.fields().forEachRemaining(entry -> {
-                    mediaData.put(entry.getKey(), entry.getValue().isValueNode() ? entry.getValue().asText() : entry.getValue().toString());
-                });
-                // Add XML attributes (e.g., Type, FileName, Result)
-                media.fields().forEachRemaining(entry -> {
-                    JsonNode node = entry.getValue();
-                    if (node.isObject() && node.has("@Type")) {
-                        node.fields().forEachRemaining(attr -> {
-                            if (attr.getKey().startsWith("@")) {
-                                mediaData.put(attr.getKey().substring(1), attr.getValue().asText());
-                            }
-                        });
-                    }
-                });
-                metadataList.add(mediaData);
-            }
-        } else if (mediaNodes.isObject()) {
-            Map<String, Object> mediaData = new HashMap<>();
-            mediaNodes.fields().forEachRemaining(entry -> {
-                mediaData.put(entry.getKey(), entry.getValue().isValueNode() ? entry.getValue().asText() : entry.getValue().toString());
-            });
-            metadataList.add(mediaData);
-        }
-    } catch (IOException | IllegalArgumentException e) {
-        System.err.println("Error parsing XML to metadata map: " + e.getMessage());
-    }
-    return metadataList;
-    }
-    
-    private List<Map<String, Object>> parseXmlFormat(byte[] xmlData) {
-        List<Map<String, Object>> result = new ArrayList<>();
-    try {
-        XmlMapper xmlMapper = new XmlMapper();
-        JsonNode mediaNode = xmlMapper.readTree(xmlData);
-
-        // Convert JsonNode to Map
-        ObjectMapper objectMapper = new ObjectMapper();
-        Map<String, Object> mediaMap = objectMapper.convertValue(mediaNode, Map.class);
-
-        result.add(mediaMap);
-    } catch (IOException | IllegalArgumentException e) {
-        System.err.println("Error parsing XML to metadata map: " + e.getMessage());
-            // Optionally log the error or throw custom exception
-            
-    }
-    return result;
-    }
-    
-    private boolean isRecordInTimeRange(Map<String, Object> record, LocalDateTime fromDate, LocalDateTime toDate) {
-        try {
-            String startTimeStr = (String) record.get("startTime");
-            if (startTimeStr == null) return false;
-            
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("M/d/yyyy h:mm:ss a");
-            LocalDateTime recordDateTime = LocalDateTime.parse(startTimeStr, formatter);
-            
-            return !recordDateTime.isBefore(fromDate) && !recordDateTime.isAfter(toDate);
-        } catch (Exception e) {
-            System.err.println("Error parsing record time: " + e.getMessage());
-            return false;
-        }
-    }
-
     public String checkConnection() {
      boolean available = vpiRepository.isContainerAvailable();
         return available ? "Azure Blob Storage container is accessible ✅"
@@ -251,60 +329,65 @@ public class VpiService {
     public List<String> getAllCmpWavFiles() {
         String prefix = "CMP/2016/1/1/Metadata/";
         List<String> allBlobs = vpiRepository.listBlobs(prefix);
-        System.out.println("All blobs: " + allBlobs);
+        log.debug("All blobs: {}", allBlobs);
         // Filter only .wav files
         return allBlobs.stream()
                 .filter(name -> name.toLowerCase().endsWith(".xml"))
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Filters a range session. Results are cached in the session store under an
+     * id derived from the root range session and a canonical form of the
+     * filters, as row ids into the shared table, so paging through a result
+     * (or re-submitting the same filters from any session of that range) never
+     * re-runs the filter. A filter that only narrows the one applied to
+     * {@code sessionId} is evaluated against that result instead of the whole range.
+     */
     public Map<String, Object> getFilteredMetadata(String sessionId, List<String> extensionNum, List<String> objectID,
-            List<String> channelNum, List<String> aniAliDigits, List<String> name, int pageNumber, int pageSize) {
-        List<Map<String, Object>> metadataList = new ArrayList<>();
-        Map<String, List<String>> appliedFilters = createAppliedFiltersMap(extensionNum, objectID, channelNum, aniAliDigits, name);
+            List<String> channelNum, List<String> aniAliDigits, List<String> name, int pageNumber, int pageSize,
+            String sortBy, String order) {
+        VpiSortField sortField = parseSortField(sortBy);
+        boolean descending = parseDescending(order);
+        Map<String, List<String>> appliedFilters = canonicalFilters(
+                createAppliedFiltersMap(extensionNum, objectID, channelNum, aniAliDigits, name));
         
-        // Check cache logic
-        if (cacheSessionFilter.containsKey(sessionId)) {
-            if (Objects.equals(cacheSessionFilter.get("filters"), appliedFilters)) {
-                metadataList = (List<Map<String, Object>>) cacheSessionFilter.get(sessionId);
-                System.out.println("Using cached session data for sessionId: " + sessionId);
-
-            } else {
-                // Get all values from session cache
-                metadataList = sessionCache.values().stream()
-                        .flatMap(List::stream)
-                        .collect(Collectors.toList());
-            }
+        VpiSession source = sessionStore.get(sessionId);
+        if (source == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,"Original session not found");
+        }
+        if (!source.isFilterResult() && appliedFilters.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,"No Filter applied");
+        }
+        String rootSessionId = source.isFilterResult() ? source.getParentId() : source.getId();
+        String resultId = filterResultId(rootSessionId, appliedFilters);
+        
+        VpiSession filtered = sessionStore.get(resultId);
+        if (filtered != null && appliedFilters.equals(filtered.getAppliedFilters())) {
+            log.debug("Using cached filter result for sessionId: {}", resultId);
         } else {
-            if (!sessionCache.containsKey(sessionId)) {
-                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,"Original session not found");
-            }
-            
-            metadataList = sessionCache.get(sessionId);
-            
-            if (!hasAnyFilter(extensionNum, objectID, channelNum, aniAliDigits, name)) {
-                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,"No Filter applied");
+            // Narrowing filters only need to look at the previous result
+            VpiSession candidates = source;
+            if (source.isFilterResult() && !isNarrowing(source.getAppliedFilters(), appliedFilters)) {
+                candidates = sessionStore.get(rootSessionId);
+                if (candidates == null) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST,"Original session not found");
+                }
             }
+            filtered = applyFilters(candidates, resultId, rootSessionId, appliedFilters);
+            sessionStore.put(filtered);
         }
         
-        // Perform filtering
-        List<Map<String, Object>> filtered = metadataList.stream()
-                .filter(metadata -> matchesFilters(metadata, extensionNum, objectID, channelNum, aniAliDigits, name))
-                .collect(Collectors.toList());
-        
-        String newSessionId = UUID.randomUUID().toString();
-        cacheSessionFilter.put(newSessionId, filtered);
-        cacheSessionFilter.put("filters", appliedFilters);
-        
         // Pagination
         int totalRecords = filtered.size();
         int totalPages = (totalRecords + pageSize - 1) / pageSize;
         
         int start = (pageNumber - 1) * pageSize;
         int end = Math.min(start + pageSize, totalRecords);
-        List<Map<String, Object>> paginated = filtered.subList(start, end);
+        int[] sortOrder = sortField != null ? sortOrder(filtered, sortField, descending) : null;
+        List<Map<String, Object>> paginated = filtered.page(start, end, sortOrder);
         
-        System.out.println("Completed VPI filter");
+        log.debug("Completed VPI filter");
         
         Map<String, Object> response = new HashMap<>();
         response.put("data", paginated);
@@ -312,10 +395,33 @@ public class VpiService {
         response.put("page_size", pageSize);
         response.put("total_records", totalRecords);
         response.put("total_pages", totalPages);
-        response.put("session_id", newSessionId);
+        response.put("session_id", filtered.getId());
+        putSort(response, sortField, descending);
         
         return response;
     }
+
+    private VpiSession applyFilters(VpiSession candidates, String resultId, String rootSessionId,
+            Map<String, List<String>> filters) {
+        VpiTable table = candidates.getTable();
+        BitSet matchingRows = matchingRows(table, filters.get("extensionNum"), filters.get("objectID"),
+                filters.get("channelNum"), filters.get("AniAliDigits"), filters.get("Name"));
+        int[] matches = new int[candidates.size()];
+        int matchCount = 0;
+        for (int i = 0; i < candidates.size(); i++) {
+            int row = candidates.rowAt(i);
+            if (matchingRows == null || matchingRows.get(row)) {
+                matches[matchCount++] = row;
+            }
+        }
+        return VpiSession.builder()
+                .id(resultId)
+                .table(table)
+                .rows(Arrays.copyOf(matches, matchCount))
+                .parentId(rootSessionId)
+                .appliedFilters(filters)
+                .build();
+    }
     
     private Map<String, List<String>> createAppliedFiltersMap(List<String> extensionNum, List<String> objectID, 
             List<String> channelNum, List<String> aniAliDigits, List<String> name) {
@@ -327,113 +433,123 @@ public class VpiService {
         filters.put("Name", name);
         return filters;
     }
-    
-    private boolean hasAnyFilter(List<String> extensionNum, List<String> objectID, List<String> channelNum, 
-            List<String> aniAliDigits, List<String> name) {
-        return (extensionNum != null && !extensionNum.isEmpty()) || 
-               (objectID != null && !objectID.isEmpty()) || 
-               (channelNum != null && !channelNum.isEmpty()) || 
-               (aniAliDigits != null && !aniAliDigits.isEmpty()) || 
-               (name != null && !name.isEmpty());
+
+    /** Sorted field names with sorted, de-duplicated values; empty filters are dropped. */
+    private Map<String, List<String>> canonicalFilters(Map<String, List<String>> filters) {
+        Map<String, List<String>> canonical = new TreeMap<>();
+        filters.forEach((field, values) -> {
+            if (hasValues(values)) {
+                canonical.put(field, values.stream().distinct().sorted().toList());
+            }
+        });
+        return canonical;
     }
-    
-    private boolean matchesFilters(Map<String, Object> metadata, List<String> extensionNum, List<String> objectID, 
-            List<String> channelNum, List<String> aniAliDigits, List<String> name) {
-        return matchesFilterList(metadata.get("extensionNum"), extensionNum) &&
-               matchesFilterList(metadata.get("objectID"), objectID) &&
-               matchesFilterList(metadata.get("channelNum"), channelNum) &&
-               matchesFilterListContains(metadata.getOrDefault("aniAliDigits", ""), aniAliDigits) &&
-               matchesNameFilter(metadata, name);
+
+    private String filterResultId(String rootSessionId, Map<String, List<String>> canonicalFilters) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(canonicalFilters.toString().getBytes(StandardCharsets.UTF_8));
+            return rootSessionId + "-f-" + HexFormat.of().formatHex(hash, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
     }
-    
-    private boolean matchesFilterList(Object metadataValue, List<String> filterValues) {
-        if (filterValues == null || filterValues.isEmpty()) {
-            return true;
+
+    /**
+     * Whether {@code next} can only match a subset of {@code previous}: every
+     * previously filtered field is still filtered, on a subset of its values.
+     * Every filter is "any of its values", so fewer values never match more.
+     */
+    private boolean isNarrowing(Map<String, List<String>> previous, Map<String, List<String>> next) {
+        if (previous == null) {
+            return false;
+        }
+        for (Map.Entry<String, List<String>> filter : previous.entrySet()) {
+            List<String> nextValues = next.get(filter.getKey());
+            if (nextValues == null || !filter.getValue().containsAll(nextValues)) {
+                return false;
+            }
         }
-        return filterValues.contains(String.valueOf(metadataValue));
+        return true;
     }
     
-    private boolean matchesFilterListContains(Object metadataValue, List<String> filterValues) {
-        if (filterValues == null || filterValues.isEmpty()) {
-            return true;
+    /**
+     * Intersects the index lookups of every non-empty filter. Returns {@code null}
+     * when no filter is set, meaning every row matches.
+     */
+    private BitSet matchingRows(VpiTable table, List<String> extensionNum, List<String> objectID, 
+            List<String> channelNum, List<String> aniAliDigits, List<String> name) {
+        VpiTableIndex index = table.index();
+        BitSet result = null;
+        if (hasValues(extensionNum)) {
+            result = intersect(result, index.matchAny("extensionNum", extensionNum));
+        }
+        if (hasValues(objectID)) {
+            result = intersect(result, index.matchAny("objectID", objectID));
+        }
+        if (hasValues(channelNum)) {
+            result = intersect(result, index.matchAny("channelNum", channelNum));
+        }
+        if (hasValues(aniAliDigits)) {
+            result = intersect(result, index.containsAny(List.of("aniAliDigits"), aniAliDigits));
         }
-        String metadataStr = String.valueOf(metadataValue);
-        return filterValues.stream().anyMatch(filterValue -> metadataStr.contains(filterValue));
+        if (hasValues(name)) {
+            result = intersect(result, index.containsAny(List.of("fullName", "name"), name));
+        }
+        return result;
     }
     
-    private boolean matchesNameFilter(Map<String, Object> metadata, List<String> nameFilters) {
-        if (nameFilters == null || nameFilters.isEmpty()) {
-            return true;
+    private boolean hasValues(List<String> filterValues) {
+        return filterValues != null && !filterValues.isEmpty();
+    }
+    
+    private BitSet intersect(BitSet current, BitSet next) {
+        if (current == null) {
+            return next;
         }
-        
-        String fullName = String.valueOf(metadata.getOrDefault("fullName", ""));
-        String name = String.valueOf(metadata.getOrDefault("name", ""));
-        
-        return nameFilters.stream().anyMatch(filterValue -> 
-            fullName.contains(filterValue) || name.contains(filterValue));
+        current.and(next);
+        return current;
     }
     
     // Method to add data to session cache (for testing or initialization)
-    public void addToSessionCache(String sessionId, List<Map<String, Object>> data) {
-        sessionCache.put(sessionId, data);
+    public void addToSessionCache(String sessionId, List<MetadataRecord> data) {
+        sessionStore.put(VpiSession.builder().id(sessionId).table(VpiColumnarTable.from(data)).build());
     }
     
     // Method to get session cache data
     public List<Map<String, Object>> getSessionCacheData(String sessionId) {
-        return sessionCache.get(sessionId);
+        VpiSession session = sessionStore.get(sessionId);
+        return session != null ? session.page(0, session.size()) : null;
     }
 
      public boolean sessionExists(String sessionId) {
-        return sessionCache.containsKey(sessionId);
+        return sessionStore.get(sessionId) != null;
     }
 
-    public ResponseEntity<ByteArrayResource> getRecordingAsMp3(String filename, String date, String opco) {
+    public ResponseEntity<StreamingResponseBody> getRecordingAsMp3(String filename, String date, String opco,
+                                                                   String accept, String range) {
         try {
             // Parse date like 5/10/2018 4:01:28 PM
             LocalDateTime fileDate = parseDateTime(date);
 
-            // Build prefix path
-            String prefix = String.format("%s/%d/%d/%d/%s",
-                    opco,
-                    fileDate.getYear(),
-                    fileDate.getMonthValue(),
-                    fileDate.getDayOfMonth(),
-                    filename);
-
-
-            // List blobs with the prefix
-            List<String> blobs = vpiRepository.listBlobs(prefix);
-
             // Find WAV file
-            for (String blobName : blobs) {
-                if (blobName.endsWith(".wav")) {
-                    System.out.println("Found WAV file: " + blobName);
-
-                    // Get WAV data
-                    byte[] wavData = vpiRepository.getBlobContent(blobName);
-
-                    // Convert to MP3
-                    try {
-                        byte[] mp3Data = convertWavToMp3(wavData);
-
-                        // Prepare response
-                        String mp3Filename = filename.replace(".wav", ".mp3");
-
-                        HttpHeaders headers = new HttpHeaders();
-                        headers.setContentType(MediaType.parseMediaType("audio/mpeg"));
-                        headers.setContentDispositionFormData("inline", mp3Filename);
-
-                        ByteArrayResource resource = new ByteArrayResource(mp3Data);
-
-                        return ResponseEntity.ok()
-                                .headers(headers)
-                                .body(resource);
-
-                    } catch (Exception e) {
-                        throw new ResponseStatusException(
-                                HttpStatus.INTERNAL_SERVER_ERROR,
-                                "Error Converting wav to MP3 " + e.getMessage());
-                    }
+            String blobName = blobResolver.resolve(RecordingBlobResolver.Key.of(opco, fileDate, filename));
+            if (blobName != null) {
+                log.debug("Found WAV file: {}", blobName);
+
+                // Convert in a profile matching the source while streaming it to the client
+                try {
+                    AudioPlayback playback = audioTranscodeService.playback(blobName, opco, accept, range);
+
+                    // Prepare response
+                    return playback.toResponseEntity(filename);
+
+                } catch (TranscodeBusyException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new ResponseStatusException(
+                            HttpStatus.INTERNAL_SERVER_ERROR,
+                            "Error Converting wav to MP3 " + e.getMessage());
                 }
             }
 
@@ -444,7 +560,7 @@ public class VpiService {
             throw new ResponseStatusException(
                     HttpStatus.BAD_REQUEST,
                     "Invalid date format. Expected M/D/YYYY H:MM:SS AM/PM.");
-        } catch (ResponseStatusException e) {
+        } catch (ResponseStatusException | TranscodeBusyException e) {
             throw e;
         } catch (Exception e) {
             throw new ResponseStatusException(
@@ -453,38 +569,4 @@ public class VpiService {
         }
     }
 
-    private byte[] convertWavToMp3(byte[] wavData) throws Exception {
-        Path tempDir = Files.createTempDirectory("audio_conversion_");
-        String uniqueId = UUID.randomUUID().toString();
-        Path inputFile = tempDir.resolve("input_" + uniqueId + ".wav");
-        Path outputFile = tempDir.resolve("output_" + uniqueId + ".mp3");
-
-        try {
-            // Create temporary directory
-            Files.write(inputFile, wavData);
-
-            MultimediaObject source = new MultimediaObject(inputFile.toFile());
-
-            AudioAttributes audio = new AudioAttributes();
-            audio.setCodec("libmp3lame");
-            audio.setBitRate(128000);
-            audio.setSamplingRate(44100);
-            audio.setChannels(2);
-
-            EncodingAttributes attrs = new EncodingAttributes();
-            attrs.setOutputFormat("mp3");
-            attrs.setAudioAttributes(audio);
-
-            Encoder encoder = new Encoder();
-            encoder.encode(source, outputFile.toFile(), attrs);
-
-            return Files.readAllBytes(outputFile);
-        } finally {
-            // Clean up temporary files
-            Files.deleteIfExists(inputFile);
-            Files.deleteIfExists(outputFile);
-            Files.deleteIfExists(tempDir);
-        }
-    }
-
 }
\ No newline at end of file
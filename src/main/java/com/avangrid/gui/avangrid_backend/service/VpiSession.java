@@ -0,0 +1,144 @@
+package com.avangrid.gui.avangrid_backend.service;
+
+import com.avangrid.gui.avangrid_backend.model.VpiScanFailure;
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A cached VPI result set held in {@link VpiSessionStore}. Range scans create
+ * root sessions that own a {@link VpiTable}; {@code /vpi/filter}
+ * creates child sessions that share the root's table and keep only the
+ * matching row ids. Both keep their records in start-time order.
+ */
+@Getter
+@Builder(toBuilder = true)
+public class VpiSession {
+
+    private static final long SESSION_WEIGHT = 64;
+    private static final int ARRAY_HEADER_BYTES = 16;
+
+    private final String id;
+    private final String opco;
+    private final LocalDateTime fromDate;
+    private final LocalDateTime toDate;
+    private final VpiTable table;
+    // row ids into table, in result order; null means every row in table order
+    private final int[] rows;
+    private final List<VpiScanFailure> failures;
+    private final boolean truncated;
+
+    private final String parentId;
+    private final Map<String, List<String>> appliedFilters;
+
+    // time window views (see window()) expose positions [windowStart, windowStart + windowLength) only
+    @Builder.Default
+    private final int windowStart = 0;
+    @Builder.Default
+    private final int windowLength = -1;
+
+    // sort permutations computed on first use, keyed by field and direction; initialized, so not a builder field
+    @Getter(AccessLevel.NONE)
+    private final Map<String, int[]> sortOrders = new ConcurrentHashMap<>();
+
+    public boolean isFilterResult() {
+        return parentId != null;
+    }
+
+    public int size() {
+        return windowLength >= 0 ? windowLength : fullSize();
+    }
+
+    /** Table row id of the {@code index}-th record of this session. */
+    public int rowAt(int index) {
+        int position = windowStart + index;
+        return rows == null ? position : rows[position];
+    }
+
+    /** Whether {@code [from, to]} lies inside the range this session was scanned for. */
+    public boolean covers(LocalDateTime from, LocalDateTime to) {
+        return fromDate != null && !truncated && !from.isBefore(fromDate) && !to.isAfter(toDate);
+    }
+
+    /**
+     * Session {@code id} over the records starting within {@code [from, to]},
+     * located with two binary searches over the time-ordered rows. It shares
+     * this session's table and row ids.
+     */
+    public VpiSession window(String id, LocalDateTime from, LocalDateTime to) {
+        int start = firstAtOrAfter(VpiMediaParser.toEpochSecond(from));
+        int end = Math.max(start, firstAtOrAfter(VpiMediaParser.toEpochSecond(to) + 1));
+        return toBuilder()
+                .id(id)
+                .fromDate(from)
+                .toDate(to)
+                .windowStart(windowStart + start)
+                .windowLength(end - start)
+                .build();
+    }
+
+    private int firstAtOrAfter(long epochSecond) {
+        int low = 0;
+        int high = size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (table.startSortKey(rowAt(mid)) < epochSecond) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int fullSize() {
+        return (rows == null ? table.rowCount() : rows.length) - windowStart;
+    }
+
+    public List<Map<String, Object>> page(int start, int end) {
+        return page(start, end, null);
+    }
+
+    /** Records {@code [start, end)} of this session, read through {@code order} when it is not {@code null}. */
+    public List<Map<String, Object>> page(int start, int end, int[] order) {
+        List<Map<String, Object>> page = new ArrayList<>(Math.max(0, end - start));
+        for (int i = start; i < end; i++) {
+            page.add(table.rowAsMap(rowAt(order == null ? i : order[i])));
+        }
+        return page;
+    }
+
+    /**
+     * Positions of this session sorted by {@code field}, computed once per field
+     * and direction and then shared by every page request. Returns {@code null}
+     * for ascending start time, which is already the session order. A new
+     * permutation adds to {@link #weight()}; see {@link VpiSessionStore#reweigh}.
+     */
+    public int[] sortOrder(VpiSortField field, boolean descending) {
+        if (field == VpiSortField.START_TIME && !descending) {
+            return null;
+        }
+        return sortOrders.computeIfAbsent(field.name() + (descending ? ":desc" : ":asc"),
+                key -> field.permutation(this, descending));
+    }
+
+    /**
+     * Estimated heap bytes of this session apart from its table: the row ids
+     * of a filter result, or a flat amount for anything else, plus the sort
+     * permutations cached so far. The store charges each table once, for as
+     * long as any stored session references it.
+     */
+    public long weight() {
+        long weight = rows != null ? (long) rows.length * Integer.BYTES : SESSION_WEIGHT;
+        for (int[] order : sortOrders.values()) {
+            weight += ARRAY_HEADER_BYTES + (long) order.length * Integer.BYTES;
+        }
+        return weight;
+    }
+}
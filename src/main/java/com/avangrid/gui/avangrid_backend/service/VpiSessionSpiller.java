@@ -0,0 +1,94 @@
+package com.avangrid.gui.avangrid_backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves large VPI tables off the heap. A table whose estimated size exceeds
+ * {@code vpi.session.spill.threshold-bytes} is written to
+ * {@code vpi.session.spill.dir} and served from a memory mapping instead
+ * ({@link VpiSpilledTable}). Spilling is skipped, and the table kept on heap,
+ * when it would take the directory past {@code vpi.session.spill.max-disk-bytes}
+ * or when writing fails.
+ */
+@Component
+@Slf4j
+public class VpiSessionSpiller {
+
+    private final boolean enabled;
+    private final long thresholdBytes;
+    private final long maxDiskBytes;
+    private final Path directory;
+
+    private final AtomicLong diskBytes = new AtomicLong();
+    private final Counter spills;
+    private final Counter spillFailures;
+
+    public VpiSessionSpiller(MeterRegistry meterRegistry,
+                             @Value("${vpi.session.spill.enabled:true}") boolean enabled,
+                             @Value("${vpi.session.spill.threshold-bytes:67108864}") long thresholdBytes,
+                             @Value("${vpi.session.spill.max-disk-bytes:10737418240}") long maxDiskBytes,
+                             @Value("${vpi.session.spill.dir:${java.io.tmpdir}/vpi-sessions}") String directory) {
+        this.enabled = enabled;
+        this.thresholdBytes = thresholdBytes;
+        this.maxDiskBytes = maxDiskBytes;
+        this.directory = Paths.get(directory);
+
+        this.spills = meterRegistry.counter("vpi.session.spill", "result", "spilled");
+        this.spillFailures = meterRegistry.counter("vpi.session.spill", "result", "failed");
+        Gauge.builder("vpi.session.spill.disk.bytes", diskBytes, AtomicLong::get).register(meterRegistry);
+    }
+
+    /** Creates the spill directory and removes files left behind by a previous run. */
+    @PostConstruct
+    void prepareDirectory() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> stale = Files.newDirectoryStream(directory, "*" + VpiSpilledTable.FILE_SUFFIX)) {
+            for (Path file : stale) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /** Returns {@code table} itself, or a memory-mapped copy of it when it is over the heap threshold. */
+    public VpiTable maybeSpill(VpiColumnarTable table) {
+        long estimated = table.estimatedBytes();
+        if (!enabled || estimated < thresholdBytes) {
+            return table;
+        }
+        if (diskBytes.get() + estimated > maxDiskBytes) {
+            log.warn("VPI spill directory is full ({} bytes); keeping a {} byte session on heap",
+                    diskBytes.get(), estimated);
+            return table;
+        }
+
+        Path file = directory.resolve(UUID.randomUUID() + VpiSpilledTable.FILE_SUFFIX);
+        try {
+            VpiSpilledTable spilled = VpiSpilledTable.write(table, file, size -> diskBytes.addAndGet(-size));
+            diskBytes.addAndGet(spilled.fileSize());
+            spills.increment();
+            log.debug("Spilled VPI session of {} rows to {} ({} bytes)", table.rowCount(), file, spilled.fileSize());
+            return spilled;
+        } catch (IOException | RuntimeException e) {
+            spillFailures.increment();
+            log.warn("Could not spill VPI session to {}: {}", file, e.getMessage());
+            return table;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.avangrid.gui.avangrid_backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU store for VPI sessions. Entries are evicted when the store holds
+ * more than {@code vpi.session.max-sessions} sessions, when the total weight
+ * (estimated bytes) exceeds {@code vpi.session.max-total-bytes}, or when a
+ * session has not been read for {@code vpi.session.idle-ttl}.
+ * <p>
+ * The total weight is the sum of the sessions' own weights plus each
+ * referenced table counted once. A table shared by a root session and the
+ * filter results and windows derived from it stays charged until the last of
+ * them leaves the store, so evicting the root alone frees nothing. Weights are
+ * re-read on every store, since a table's filter index and a session's sort
+ * permutations grow after the session was stored; {@link #reweigh(VpiSession)}
+ * charges such growth right away.
+ * <p>
+ * Every stored session retains its table and releases it when it leaves the
+ * store, so spilled tables delete their file once no session uses them.
+ */
+@Component
+@Slf4j
+public class VpiSessionStore {
+
+    private final int maxSessions;
+    private final long maxTotalWeight;
+    private final long idleTtlNanos;
+
+    // access-ordered: iteration starts at the least recently used session
+    private final LinkedHashMap<String, Entry> sessions = new LinkedHashMap<>(16, 0.75f, true);
+    // tables referenced by stored sessions, each charged once
+    private final IdentityHashMap<VpiTable, TableCharge> tables = new IdentityHashMap<>();
+    private long totalWeight;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter sizeEvictions;
+    private final Counter weightEvictions;
+    private final Counter expiredEvictions;
+
+    public VpiSessionStore(MeterRegistry meterRegistry,
+                           @Value("${vpi.session.max-sessions:200}") int maxSessions,
+                           @Value("${vpi.session.max-total-bytes:536870912}") long maxTotalWeight,
+                           @Value("${vpi.session.idle-ttl:30m}") Duration idleTtl) {
+        this.maxSessions = maxSessions;
+        this.maxTotalWeight = maxTotalWeight;
+        this.idleTtlNanos = idleTtl.toNanos();
+
+        this.hits = meterRegistry.counter("vpi.session.cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("vpi.session.cache.requests", "result", "miss");
+        this.sizeEvictions = meterRegistry.counter("vpi.session.cache.evictions", "cause", "size");
+        this.weightEvictions = meterRegistry.counter("vpi.session.cache.evictions", "cause", "weight");
+        this.expiredEvictions = meterRegistry.counter("vpi.session.cache.evictions", "cause", "expired");
+        Gauge.builder("vpi.session.cache.size", this, VpiSessionStore::size).register(meterRegistry);
+        Gauge.builder("vpi.session.cache.weight", this, VpiSessionStore::totalWeight).register(meterRegistry);
+    }
+
+    public synchronized VpiSession get(String sessionId) {
+        if (sessionId == null) {
+            misses.increment();
+            return null;
+        }
+        Entry entry = sessions.get(sessionId);
+        long now = System.nanoTime();
+        if (entry == null || isExpired(entry, now)) {
+            if (entry != null) {
+                evict(sessionId, entry, expiredEvictions);
+            }
+            misses.increment();
+            return null;
+        }
+        entry.lastAccess = now;
+        hits.increment();
+        return entry.session;
+    }
+
+    public synchronized void put(VpiSession session) {
+        Entry entry = new Entry(session, System.nanoTime());
+        retain(entry);
+        Entry previous = sessions.put(session.getId(), entry);
+        if (previous != null) {
+            release(previous);
+        }
+        reweigh();
+        evictOverflow(session.getId());
+    }
+
+    /** Charges a stored session's current weight, evicting other sessions if that exceeds the budget. */
+    public synchronized void reweigh(VpiSession session) {
+        Entry entry = sessions.get(session.getId());
+        if (entry == null || entry.session != session) {
+            return;
+        }
+        long weight = session.weight();
+        totalWeight += weight - entry.weight;
+        entry.weight = weight;
+        evictOverflow(session.getId());
+    }
+
+    public synchronized void remove(String sessionId) {
+        Entry entry = sessions.remove(sessionId);
+        if (entry != null) {
+            release(entry);
+        }
+    }
+
+    public synchronized int size() {
+        return sessions.size();
+    }
+
+    public synchronized long totalWeight() {
+        return totalWeight;
+    }
+
+    @Scheduled(fixedDelayString = "${vpi.session.sweep-interval-ms:60000}")
+    public synchronized void evictExpired() {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<String, Entry>> it = sessions.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Entry> next = it.next();
+            if (isExpired(next.getValue(), now)) {
+                it.remove();
+                release(next.getValue());
+                expiredEvictions.increment();
+            }
+        }
+    }
+
+    private void retain(Entry entry) {
+        VpiTable table = entry.session.getTable();
+        table.retain();
+        TableCharge charge = tables.computeIfAbsent(table, t -> new TableCharge());
+        if (charge.sessions++ == 0) {
+            charge.weight = table.estimatedBytes();
+            totalWeight += charge.weight;
+        }
+        totalWeight += entry.weight;
+    }
+
+    private void release(Entry entry) {
+        VpiTable table = entry.session.getTable();
+        totalWeight -= entry.weight;
+        TableCharge charge = tables.get(table);
+        if (--charge.sessions == 0) {
+            tables.remove(table);
+            totalWeight -= charge.weight;
+        }
+        table.release();
+    }
+
+    private void reweigh() {
+        for (Entry entry : sessions.values()) {
+            long weight = entry.session.weight();
+            totalWeight += weight - entry.weight;
+            entry.weight = weight;
+        }
+        for (Map.Entry<VpiTable, TableCharge> table : tables.entrySet()) {
+            long weight = table.getKey().estimatedBytes();
+            totalWeight += weight - table.getValue().weight;
+            table.getValue().weight = weight;
+        }
+    }
+
+    private void evictOverflow(String protectedId) {
+        Iterator<Map.Entry<String, Entry>> it = sessions.entrySet().iterator();
+        while (it.hasNext() && (sessions.size() > maxSessions || totalWeight > maxTotalWeight)) {
+            Map.Entry<String, Entry> eldest = it.next();
+            // never evict the session that was just stored, even if it alone exceeds the budget
+            if (eldest.getKey().equals(protectedId)) {
+                continue;
+            }
+            Counter cause = sessions.size() > maxSessions ? sizeEvictions : weightEvictions;
+            it.remove();
+            release(eldest.getValue());
+            cause.increment();
+            log.debug("Evicted VPI session {} ({} bytes)", eldest.getKey(), eldest.getValue().weight);
+        }
+    }
+
+    private void evict(String sessionId, Entry entry, Counter cause) {
+        sessions.remove(sessionId);
+        release(entry);
+        cause.increment();
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return now - entry.lastAccess > idleTtlNanos;
+    }
+
+    private static final class Entry {
+        private final VpiSession session;
+        private long weight;
+        private long lastAccess;
+
+        private Entry(VpiSession session, long lastAccess) {
+            this.session = session;
+            this.weight = session.weight();
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    private static final class TableCharge {
+        private int sessions;
+        private long weight;
+    }
+}
@@ -0,0 +1,119 @@
+package com.avangrid.gui.avangrid_backend.service;
+
+import com.avangrid.gui.avangrid_backend.model.MetadataRecord;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.IntFunction;
+
+/**
+ * Server-side sort keys for VPI sessions. Sorting produces an {@code int[]}
+ * permutation of session positions; ties keep start-time order and records
+ * without the key always sort last, whatever the direction.
+ */
+public enum VpiSortField {
+
+    START_TIME("startTime"),
+    DURATION("duration"),
+    EXTENSION_NUM("extensionNum"),
+    NAME("name");
+
+    private static final Comparator<String> EXTENSION_ORDER = (a, b) -> {
+        Long x = parseLong(a);
+        Long y = parseLong(b);
+        if (x != null && y != null) {
+            return Long.compare(x, y);
+        }
+        if (x != null || y != null) {
+            return x != null ? -1 : 1;
+        }
+        return a.compareTo(b);
+    };
+
+    private final String param;
+
+    VpiSortField(String param) {
+        this.param = param;
+    }
+
+    public String getParam() {
+        return param;
+    }
+
+    /** Matches a {@code sort_by} value case-insensitively; returns {@code null} for unknown keys. */
+    public static VpiSortField fromParam(String value) {
+        for (VpiSortField field : values()) {
+            if (field.param.equalsIgnoreCase(value)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    /** Positions of {@code session} in sorted order. */
+    int[] permutation(VpiSession session, boolean descending) {
+        int size = session.size();
+        VpiTable table = session.getTable();
+        Comparator<Integer> order = switch (this) {
+            case START_TIME -> keyOrder(size, p -> {
+                long key = table.startSortKey(session.rowAt(p));
+                return key == Long.MAX_VALUE ? null : key;
+            }, Comparator.<Long>naturalOrder(), descending);
+            case DURATION -> keyOrder(size, p -> durationSeconds(table, session.rowAt(p)),
+                    Comparator.<Long>naturalOrder(), descending);
+            case EXTENSION_NUM -> keyOrder(size, p -> table.get(session.rowAt(p), "extensionNum"),
+                    EXTENSION_ORDER, descending);
+            case NAME -> keyOrder(size, p -> {
+                String name = table.get(session.rowAt(p), "fullName");
+                return name != null ? name : table.get(session.rowAt(p), "name");
+            }, String.CASE_INSENSITIVE_ORDER, descending);
+        };
+
+        Integer[] positions = new Integer[size];
+        Arrays.setAll(positions, p -> p);
+        // stable sort: equal keys stay in start-time order
+        Arrays.sort(positions, order);
+        int[] permutation = new int[size];
+        for (int i = 0; i < size; i++) {
+            permutation[i] = positions[i];
+        }
+        return permutation;
+    }
+
+    /** Extracts every key once, then compares positions by key with missing keys last. */
+    @SuppressWarnings("unchecked")
+    private static <K> Comparator<Integer> keyOrder(int size, IntFunction<K> key, Comparator<K> natural,
+                                                    boolean descending) {
+        Object[] keys = new Object[size];
+        for (int p = 0; p < size; p++) {
+            keys[p] = key.apply(p);
+        }
+        Comparator<K> direction = descending ? natural.reversed() : natural;
+        return Comparator.comparing(p -> (K) keys[p], Comparator.nullsLast(direction));
+    }
+
+    /** The record's {@code duration} field when numeric, otherwise {@code endTime - startTime}. */
+    private static Long durationSeconds(VpiTable table, int row) {
+        Long duration = parseLong(table.get(row, "duration"));
+        if (duration != null) {
+            return duration;
+        }
+        long start = VpiMediaParser.parseStartTime(table.get(row, "startTime"));
+        long end = VpiMediaParser.parseStartTime(table.get(row, "endTime"));
+        if (start == MetadataRecord.NO_START_TIME || end == MetadataRecord.NO_START_TIME) {
+            return null;
+        }
+        return end - start;
+    }
+
+    private static Long parseLong(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
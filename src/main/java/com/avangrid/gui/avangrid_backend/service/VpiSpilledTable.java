@@ -0,0 +1,267 @@
+package com.avangrid.gui.avangrid_backend.service;
+
+import com.avangrid.gui.avangrid_backend.model.MetadataRecord;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+
+/**
+ * A {@link VpiTable} stored in a local file and read through a read-only
+ * memory mapping, so its rows cost no heap. Layout (big-endian):
+ * <pre>
+ *   int magic, int rowCount, int columnCount, int offsetsPosition
+ *   columnCount x (unsigned short length, UTF-8 name)
+ *   rowCount x row:  long startEpoch, columnCount x (varint length + 1 or 0 if absent, UTF-8 value)
+ *   rowCount x int   row offset
+ * </pre>
+ * Reads use absolute buffer access only, so the mapping is safe to share
+ * between request threads. The file is deleted once the last session
+ * referencing the table is released; an existing mapping stays readable
+ * until it is garbage collected.
+ */
+@Slf4j
+public final class VpiSpilledTable implements VpiTable {
+
+    static final String FILE_SUFFIX = ".vpis";
+
+    private static final int MAGIC = 0x56504953; // "VPIS"
+    private static final int HEADER_BYTES = 16;
+
+    private final Path file;
+    private final long fileSize;
+    private final MappedByteBuffer buffer;
+    private final int rowCount;
+    private final String[] columnNames;
+    private final Map<String, Integer> columnIndex;
+    private final int offsetsPosition;
+    private final VpiTableIndex index;
+
+    private final AtomicInteger references = new AtomicInteger();
+    private final LongConsumer onDelete;
+
+    private VpiSpilledTable(Path file, LongConsumer onDelete) throws IOException {
+        this.file = file;
+        this.onDelete = onDelete;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            this.fileSize = channel.size();
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+        }
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a VPI session file: " + file);
+        }
+        this.rowCount = buffer.getInt(4);
+        this.columnNames = new String[buffer.getInt(8)];
+        this.offsetsPosition = buffer.getInt(12);
+        this.columnIndex = new HashMap<>(columnNames.length * 2);
+        int position = HEADER_BYTES;
+        for (int c = 0; c < columnNames.length; c++) {
+            int length = Short.toUnsignedInt(buffer.getShort(position));
+            columnNames[c] = decode(position + 2, length);
+            columnIndex.put(columnNames[c], c);
+            position += 2 + length;
+        }
+        this.index = new VpiTableIndex(this);
+    }
+
+    /**
+     * Writes {@code table} to {@code file} and maps it. {@code onDelete} receives
+     * the file size once the file has been deleted.
+     */
+    static VpiSpilledTable write(VpiColumnarTable table, Path file, LongConsumer onDelete) throws IOException {
+        String[] columnNames = table.columnNames();
+        int[] offsets = new int[table.rowCount()];
+        int offsetsPosition;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(table.rowCount());
+            out.writeInt(columnNames.length);
+            out.writeInt(0); // offsets position, patched below
+            for (String name : columnNames) {
+                byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                out.writeShort(bytes.length);
+                out.write(bytes);
+            }
+            for (int row = 0; row < table.rowCount(); row++) {
+                offsets[row] = position(out);
+                out.writeLong(table.startEpoch(row));
+                for (String name : columnNames) {
+                    String value = table.get(row, name);
+                    if (value == null) {
+                        writeVarint(out, 0);
+                    } else {
+                        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                        writeVarint(out, bytes.length + 1);
+                        out.write(bytes);
+                    }
+                }
+            }
+            offsetsPosition = position(out);
+            for (int offset : offsets) {
+                out.writeInt(offset);
+            }
+            // fails if the offsets pushed the file past one mapping
+            position(out);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        try {
+            patchInt(file, 12, offsetsPosition);
+            return new VpiSpilledTable(file, onDelete);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    @Override
+    public int rowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public boolean hasColumn(String column) {
+        return columnIndex.containsKey(column);
+    }
+
+    @Override
+    public String get(int row, String column) {
+        Integer c = columnIndex.get(column);
+        if (c == null) {
+            return null;
+        }
+        int position = rowOffset(row) + Long.BYTES;
+        for (int i = 0; i < c; i++) {
+            int length = readVarint(position);
+            position += varintSize(length) + Math.max(0, length - 1);
+        }
+        int length = readVarint(position);
+        return length == 0 ? null : decode(position + varintSize(length), length - 1);
+    }
+
+    @Override
+    public long startEpoch(int row) {
+        return buffer.getLong(rowOffset(row));
+    }
+
+    @Override
+    public Map<String, Object> rowAsMap(int row) {
+        Map<String, Object> map = new LinkedHashMap<>(columnNames.length * 2);
+        int position = rowOffset(row) + Long.BYTES;
+        for (String name : columnNames) {
+            int length = readVarint(position);
+            position += varintSize(length);
+            if (length > 0) {
+                map.put(name, MetadataRecord.outputValue(decode(position, length - 1)));
+                position += length - 1;
+            }
+        }
+        return map;
+    }
+
+    /** Rows are in the mapping; the heap holds the column names and whatever filter indexes were built. */
+    @Override
+    public long estimatedBytes() {
+        long bytes = 256;
+        for (String name : columnNames) {
+            bytes += 64 + name.length();
+        }
+        return bytes + index.estimatedBytes();
+    }
+
+    @Override
+    public VpiTableIndex index() {
+        return index;
+    }
+
+    public long fileSize() {
+        return fileSize;
+    }
+
+    @Override
+    public void retain() {
+        references.incrementAndGet();
+    }
+
+    @Override
+    public void release() {
+        if (references.decrementAndGet() == 0) {
+            try {
+                Files.deleteIfExists(file);
+                onDelete.accept(fileSize);
+                log.debug("Deleted VPI session file {}", file);
+            } catch (IOException e) {
+                log.warn("Could not delete VPI session file {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    private int rowOffset(int row) {
+        return buffer.getInt(offsetsPosition + row * Integer.BYTES);
+    }
+
+    private String decode(int position, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(position, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int readVarint(int position) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(position++);
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) {
+            size++;
+        }
+        return size;
+    }
+
+    private static void writeVarint(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /** Bytes written so far; a single mapping is limited to 2 GiB, so larger tables are refused. */
+    private static int position(DataOutputStream out) throws IOException {
+        int written = out.size();
+        if (written == Integer.MAX_VALUE) {
+            throw new IOException("VPI session too large to spill into one mapping");
+        }
+        return written;
+    }
+
+    private static void patchInt(Path file, long position, int value) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, value), position);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.avangrid.gui.avangrid_backend.service;
+
+import java.io.IOException;
+
+/**
+ * Destination for progressive VPI scan output. Implementations frame each
+ * event for their transport (NDJSON line, Server-Sent Event, ...).
+ */
+@FunctionalInterface
+public interface VpiStreamSink {
+
+    void send(String event, Object data) throws IOException;
+}
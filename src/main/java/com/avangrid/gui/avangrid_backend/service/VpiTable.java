@@ -0,0 +1,45 @@
+package com.avangrid.gui.avangrid_backend.service;
+
+import com.avangrid.gui.avangrid_backend.model.MetadataRecord;
+
+import java.util.Map;
+
+/**
+ * Read-only VPI result set, ordered by start time (records without one last).
+ * A range session owns one; filter results and time windows derived from it
+ * share it by row id. Implementations are either on-heap
+ * ({@link VpiColumnarTable}) or memory-mapped from disk ({@link VpiSpilledTable}).
+ */
+public interface VpiTable {
+
+    int rowCount();
+
+    boolean hasColumn(String column);
+
+    /** Value of {@code column} at {@code row}, or {@code null} when the record has no such field. */
+    String get(int row, String column);
+
+    long startEpoch(int row);
+
+    /** Sort key of {@code row}: its start epoch, or {@link Long#MAX_VALUE} when it has no parseable start time. */
+    default long startSortKey(int row) {
+        long epoch = startEpoch(row);
+        return epoch == MetadataRecord.NO_START_TIME ? Long.MAX_VALUE : epoch;
+    }
+
+    Map<String, Object> rowAsMap(int row);
+
+    /** Estimated heap bytes, used for the session store's weight accounting. */
+    long estimatedBytes();
+
+    /** Filter indexes over this table; each field's index is built on first use. */
+    VpiTableIndex index();
+
+    /** Called by {@link VpiSessionStore} when a stored session starts referencing this table. */
+    default void retain() {
+    }
+
+    /** Called by {@link VpiSessionStore} when a stored session referencing this table is dropped. */
+    default void release() {
+    }
+}
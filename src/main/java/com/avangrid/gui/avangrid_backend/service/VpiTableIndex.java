@@ -0,0 +1,188 @@
+package com.avangrid.gui.avangrid_backend.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Secondary indexes over a {@link VpiTable}, built lazily per field the
+ * first time a filter touches it.
+ * <ul>
+ *   <li>Exact-match fields map each value to the sorted row ids holding it.</li>
+ *   <li>Substring fields map each character trigram to the sorted row ids whose
+ *   value contains it. A term's candidates are the intersection of its
+ *   trigram postings, then verified with {@link String#contains}.</li>
+ * </ul>
+ * Postings are stored as sorted {@code int[]} and only materialized into
+ * {@link BitSet}s while a query runs, so sparse values stay cheap. Their
+ * estimated size is added up as each field is indexed, see {@link #estimatedBytes()}.
+ */
+public final class VpiTableIndex {
+
+    private static final int GRAM = 3;
+    private static final int[] NO_ROWS = new int[0];
+
+    // rough per-object costs, matching VpiColumnarTable's weight accounting
+    private static final int ARRAY_HEADER_BYTES = 16;
+    private static final int STRING_OVERHEAD_BYTES = 40;
+    private static final int MAP_ENTRY_BYTES = 32;
+
+    private final VpiTable table;
+    private final Map<String, Map<String, int[]>> exactIndexes = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, int[]>> gramIndexes = new ConcurrentHashMap<>();
+    private final AtomicLong estimatedBytes = new AtomicLong();
+
+    VpiTableIndex(VpiTable table) {
+        this.table = table;
+    }
+
+    /** Estimated heap bytes of the indexes built so far; grows as filters touch new fields. */
+    public long estimatedBytes() {
+        return estimatedBytes.get();
+    }
+
+    /**
+     * Rows whose {@code field} equals any of {@code values}. A missing field
+     * is indexed as {@code "null"}, matching the historical
+     * {@code String.valueOf} comparison.
+     */
+    public BitSet matchAny(String field, Collection<String> values) {
+        Map<String, int[]> postings = exactIndexes.computeIfAbsent(field, this::buildExactIndex);
+        BitSet result = new BitSet(table.rowCount());
+        for (String value : values) {
+            for (int row : postings.getOrDefault(value, NO_ROWS)) {
+                result.set(row);
+            }
+        }
+        return result;
+    }
+
+    /** Rows where any of {@code fields} contains any of {@code terms}; a missing field reads as "". */
+    public BitSet containsAny(List<String> fields, Collection<String> terms) {
+        BitSet result = new BitSet(table.rowCount());
+        for (String term : terms) {
+            for (String field : fields) {
+                result.or(contains(field, term));
+            }
+        }
+        return result;
+    }
+
+    private BitSet contains(String field, String term) {
+        BitSet rows = new BitSet(table.rowCount());
+        if (term.length() < GRAM) {
+            // too short for the trigram index: verify every row
+            for (int row = 0; row < table.rowCount(); row++) {
+                if (valueOrEmpty(row, field).contains(term)) {
+                    rows.set(row);
+                }
+            }
+            return rows;
+        }
+
+        Map<String, int[]> postings = gramIndexes.computeIfAbsent(field, this::buildGramIndex);
+        int[] candidates = null;
+        for (String gram : grams(term)) {
+            int[] gramRows = postings.getOrDefault(gram, NO_ROWS);
+            candidates = candidates == null ? gramRows : intersect(candidates, gramRows);
+            if (candidates.length == 0) {
+                return rows;
+            }
+        }
+        for (int row : candidates) {
+            if (valueOrEmpty(row, field).contains(term)) {
+                rows.set(row);
+            }
+        }
+        return rows;
+    }
+
+    private Map<String, int[]> buildExactIndex(String field) {
+        Map<String, RowList> lists = new HashMap<>();
+        for (int row = 0; row < table.rowCount(); row++) {
+            lists.computeIfAbsent(String.valueOf(table.get(row, field)), k -> new RowList()).add(row);
+        }
+        return freeze(lists);
+    }
+
+    private Map<String, int[]> buildGramIndex(String field) {
+        Map<String, RowList> lists = new HashMap<>();
+        for (int row = 0; row < table.rowCount(); row++) {
+            String value = table.get(row, field);
+            if (value == null || value.length() < GRAM) {
+                continue;
+            }
+            for (String gram : grams(value)) {
+                // rows are visited in order, so a duplicate gram within one value is always the tail
+                RowList list = lists.computeIfAbsent(gram, k -> new RowList());
+                if (list.size == 0 || list.rows[list.size - 1] != row) {
+                    list.add(row);
+                }
+            }
+        }
+        return freeze(lists);
+    }
+
+    private String valueOrEmpty(int row, String field) {
+        String value = table.get(row, field);
+        return value != null ? value : "";
+    }
+
+    private static List<String> grams(String value) {
+        List<String> grams = new ArrayList<>(value.length() - GRAM + 1);
+        for (int i = 0; i + GRAM <= value.length(); i++) {
+            grams.add(value.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                out[n++] = a[i];
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private Map<String, int[]> freeze(Map<String, RowList> lists) {
+        Map<String, int[]> postings = new HashMap<>(lists.size() * 2);
+        long bytes = ARRAY_HEADER_BYTES + (long) lists.size() * 2 * Integer.BYTES;
+        for (Map.Entry<String, RowList> entry : lists.entrySet()) {
+            RowList list = entry.getValue();
+            postings.put(entry.getKey(), Arrays.copyOf(list.rows, list.size));
+            bytes += MAP_ENTRY_BYTES + STRING_OVERHEAD_BYTES + entry.getKey().length()
+                    + ARRAY_HEADER_BYTES + (long) list.size * Integer.BYTES;
+        }
+        estimatedBytes.addAndGet(bytes);
+        return postings;
+    }
+
+    private static final class RowList {
+        private int[] rows = new int[4];
+        private int size;
+
+        private void add(int row) {
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            rows[size++] = row;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.avangrid.gui.avangrid_backend.service;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The {@code fmt } chunk of a RIFF/WAVE file. Only the first few KB of a blob
+ * are needed to read it, so the encoding profile can be chosen before the
+ * audio itself is downloaded.
+ */
+public record WavHeader(int formatTag, int channels, int sampleRate, int bitsPerSample) {
+
+    public static final int FORMAT_PCM = 0x0001;
+    public static final int FORMAT_ALAW = 0x0006;
+    public static final int FORMAT_MULAW = 0x0007;
+    public static final int FORMAT_EXTENSIBLE = 0xFFFE;
+
+    /** Bytes to fetch to be sure of seeing the {@code fmt } chunk, even after LIST or bext chunks. */
+    public static final int PROBE_BYTES = 4096;
+
+    /** Parses the header at the start of {@code bytes}, or returns {@code null} if it is not a WAV file. */
+    public static WavHeader parse(byte[] bytes) {
+        if (bytes.length < 12) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt(0) != 0x46464952 || buffer.getInt(8) != 0x45564157) { // "RIFF", "WAVE"
+            return null;
+        }
+        int position = 12;
+        while (position + 8 <= bytes.length) {
+            int chunkId = buffer.getInt(position);
+            long chunkSize = Integer.toUnsignedLong(buffer.getInt(position + 4));
+            if (chunkId == 0x20746D66) { // "fmt "
+                if (chunkSize < 16 || position + 24 > bytes.length) {
+                    return null;
+                }
+                int formatTag = Short.toUnsignedInt(buffer.getShort(position + 8));
+                int channels = Short.toUnsignedInt(buffer.getShort(position + 10));
+                int sampleRate = buffer.getInt(position + 12);
+                int bitsPerSample = Short.toUnsignedInt(buffer.getShort(position + 22));
+                if (formatTag == FORMAT_EXTENSIBLE && chunkSize >= 40 && position + 34 <= bytes.length) {
+                    // the real format is the first two bytes of the sub-format GUID
+                    formatTag = Short.toUnsignedInt(buffer.getShort(position + 32));
+                }
+                if (channels == 0 || sampleRate <= 0) {
+                    return null;
+                }
+                return new WavHeader(formatTag, channels, sampleRate, bitsPerSample);
+            }
+            // chunks are padded to an even size
+            long next = position + 8 + chunkSize + (chunkSize & 1);
+            if (next > bytes.length) {
+                return null;
+            }
+            position = (int) next;
+        }
+        return null;
+    }
+
+    /** Whether browsers play the file as-is: plain PCM only, not the G.711 telephony codecs. */
+    public boolean isBrowserPlayable() {
+        return formatTag == FORMAT_PCM && (bitsPerSample == 8 || bitsPerSample == 16);
+    }
+}
@@ -0,0 +1,95 @@
+package com.avangrid.gui.avangrid_backend.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces concurrent calls for the same key: the first caller runs the
+ * work, and callers arriving while it is in flight wait for it and receive
+ * the same result or exception. Nothing is kept once the work completes, so a
+ * later call runs the work again.
+ *
+ * @param <K> key identifying identical work
+ * @param <V> result shared between coalesced callers; must not be mutated
+ */
+public final class SingleFlight<K, V> {
+
+    @FunctionalInterface
+    public interface Work<V, E extends Exception> {
+        V run() throws E;
+    }
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+    private final LongAdder shared = new LongAdder();
+
+    public <E extends Exception> V execute(K key, Work<V, E> work) throws E {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = flights.putIfAbsent(key, flight);
+        if (existing != null) {
+            shared.increment();
+            return await(existing);
+        }
+        try {
+            V value = work.run();
+            flight.complete(value);
+            return value;
+        } catch (Throwable t) {
+            flight.completeExceptionally(t);
+            throw t;
+        } finally {
+            flights.remove(key, flight);
+        }
+    }
+
+    /**
+     * Waits for the work in flight for {@code key}, if any, ignoring its
+     * outcome. Returns {@code true} if there was one.
+     */
+    public boolean awaitInFlight(K key) {
+        CompletableFuture<V> flight = flights.get(key);
+        if (flight == null) {
+            return false;
+        }
+        shared.increment();
+        try {
+            flight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // the caller checks for the work's effect itself
+        }
+        return true;
+    }
+
+    /** Keys currently in flight. */
+    public int inFlight() {
+        return flights.size();
+    }
+
+    /** Calls that waited on another caller's work instead of running their own. */
+    public long sharedCount() {
+        return shared.sum();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <E extends Exception> V await(CompletableFuture<V> flight) throws E {
+        try {
+            return flight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a shared operation", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            // same call site as the leader, so the same checked exception type
+            throw (E) cause;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.avangrid.gui.avangrid_backend.benchmark;
+
+import com.avangrid.gui.avangrid_backend.model.MetadataRecord;
+import com.avangrid.gui.avangrid_backend.service.VpiMediaParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the tree-based CMP parsing path (XmlMapper + JsonNode + HashMap)
+ * with the streaming {@link VpiMediaParser}. Run with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.avangrid.gui.avangrid_backend.benchmark.VpiMediaParserBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VpiMediaParserBenchmark {
+
+    @Param({"10", "500"})
+    private int mediaCount;
+
+    private byte[] cmpXml;
+    private final VpiMediaParser parser = new VpiMediaParser();
+
+    @Setup
+    public void setUp() {
+        StringBuilder xml = new StringBuilder("<Root><Objects>");
+        for (int i = 0; i < mediaCount; i++) {
+            xml.append("<Media Type=\"Audio\" FileName=\"").append(100000 + i).append(".wav\" Result=\"0\">")
+               .append("<objectID>").append(900000 + i).append("</objectID>")
+               .append("<startTime>5/10/2018 4:01:").append(String.format("%02d", i % 60)).append(" PM</startTime>")
+               .append("<endTime>5/10/2018 4:09:12 PM</endTime>")
+               .append("<duration>").append(i % 900).append("</duration>")
+               .append("<extensionNum>").append(4000 + i % 50).append("</extensionNum>")
+               .append("<channelNum>").append(i % 24).append("</channelNum>")
+               .append("<aniAliDigits>20755501").append(String.format("%02d", i % 100)).append("</aniAliDigits>")
+               .append("<fullName>Agent ").append(i % 50).append("</fullName>")
+               .append("<name>agent").append(i % 50).append("</name>")
+               .append("</Media>");
+        }
+        xml.append("</Objects></Root>");
+        cmpXml = xml.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> treeBased() throws Exception {
+        List<Map<String, Object>> metadataList = new ArrayList<>();
+        XmlMapper xmlMapper = new XmlMapper();
+        JsonNode mediaNodes = xmlMapper.readTree(cmpXml).path("Objects").path("Media");
+        for (JsonNode media : mediaNodes) {
+            Map<String, Object> mediaData = new HashMap<>();
+            media.fields().forEachRemaining(entry -> mediaData.put(entry.getKey(),
+                    entry.getValue().isValueNode() ? entry.getValue().asText() : entry.getValue().toString()));
+            media.fields().forEachRemaining(entry -> {
+                JsonNode node = entry.getValue();
+                if (node.isObject() && node.has("@Type")) {
+                    node.fields().forEachRemaining(attr -> {
+                        if (attr.getKey().startsWith("@")) {
+                            mediaData.put(attr.getKey().substring(1), attr.getValue().asText());
+                        }
+                    });
+                }
+            });
+            metadataList.add(mediaData);
+        }
+        return metadataList;
+    }
+
+    @Benchmark
+    public List<MetadataRecord> streaming() throws Exception {
+        return parser.parseCmp(cmpXml);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(VpiMediaParserBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
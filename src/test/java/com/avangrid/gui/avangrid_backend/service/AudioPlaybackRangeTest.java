@@ -0,0 +1,74 @@
+package com.avangrid.gui.avangrid_backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AudioPlaybackRangeTest {
+
+    private static final long LENGTH = 1000;
+
+    @Test
+    void singleRange() {
+        AudioPlayback.Range range = AudioPlayback.Range.parse("bytes=100-199", LENGTH);
+        assertEquals(new AudioPlayback.Range(100, 199), range);
+        assertEquals(100, range.length());
+    }
+
+    @Test
+    void endPastLengthIsClamped() {
+        assertEquals(new AudioPlayback.Range(900, 999), AudioPlayback.Range.parse("bytes=900-5000", LENGTH));
+    }
+
+    @Test
+    void openEndedRange() {
+        assertEquals(new AudioPlayback.Range(400, 999), AudioPlayback.Range.parse("bytes=400-", LENGTH));
+    }
+
+    @Test
+    void suffixRange() {
+        assertEquals(new AudioPlayback.Range(900, 999), AudioPlayback.Range.parse("bytes=-100", LENGTH));
+    }
+
+    @Test
+    void suffixLongerThanFileIsWholeFile() {
+        assertNull(AudioPlayback.Range.parse("bytes=-5000", LENGTH));
+    }
+
+    @Test
+    void wholeFileNeedsNoRange() {
+        assertNull(AudioPlayback.Range.parse(null, LENGTH));
+        assertNull(AudioPlayback.Range.parse("bytes=0-", LENGTH));
+        assertNull(AudioPlayback.Range.parse("bytes=0-999", LENGTH));
+    }
+
+    @Test
+    void unsupportedSyntaxIsIgnored() {
+        assertNull(AudioPlayback.Range.parse("bytes=0-10,20-30", LENGTH));
+        assertNull(AudioPlayback.Range.parse("items=0-10", LENGTH));
+        assertNull(AudioPlayback.Range.parse("bytes=-", LENGTH));
+        assertNull(AudioPlayback.Range.parse("bytes=200-100", LENGTH));
+        assertNull(AudioPlayback.Range.parse("bytes=99999999999999999999-", LENGTH));
+    }
+
+    @Test
+    void startBeyondEndIsUnsatisfiable() {
+        assertSame(AudioPlayback.Range.UNSATISFIABLE, AudioPlayback.Range.parse("bytes=1000-", LENGTH));
+        assertSame(AudioPlayback.Range.UNSATISFIABLE, AudioPlayback.Range.parse("bytes=2000-3000", LENGTH));
+        assertSame(AudioPlayback.Range.UNSATISFIABLE, AudioPlayback.Range.parse("bytes=-0", LENGTH));
+    }
+
+    @Test
+    void seekDetection() {
+        assertTrue(AudioPlayback.Range.isSeek("bytes=100-"));
+        assertTrue(AudioPlayback.Range.isSeek("bytes=-100"));
+        assertTrue(AudioPlayback.Range.isSeek("bytes=0-99"));
+        assertFalse(AudioPlayback.Range.isSeek(null));
+        assertFalse(AudioPlayback.Range.isSeek("bytes=0-"));
+        assertFalse(AudioPlayback.Range.isSeek("bytes=0-10,20-30"));
+    }
+}
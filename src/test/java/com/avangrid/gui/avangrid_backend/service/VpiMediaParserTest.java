@@ -0,0 +1,138 @@
+package com.avangrid.gui.avangrid_backend.service;
+
+import com.avangrid.gui.avangrid_backend.model.MetadataRecord;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Golden tests: the streaming parser must give every opco the same record maps
+ * as the {@code XmlMapper} tree parsing it replaced ({@link #treeCmp} and
+ * {@link #treeSingle} are copies of it).
+ */
+class VpiMediaParserTest {
+
+    private static final String CMP_XML = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <Root>
+              <Objects>
+                <Media Type="Audio" FileName="100001.wav" Result="0">
+                  <objectID>900001</objectID>
+                  <startTime>5/10/2018 4:01:07 PM</startTime>
+                  <endTime>5/10/2018 4:09:12 PM</endTime>
+                  <extensionNum>4001</extensionNum>
+                  <Agent id="7"><name>Bob</name><name>Al</name></Agent>
+                  <tag>a</tag>
+                  <tag>b</tag>
+                  <Note lang="en">hi &amp; bye</Note>
+                  <empty/>
+                </Media>
+                <Media Type="Audio" FileName="100002.wav" Result="1">
+                  <objectID>900002</objectID>
+                  <startTime>not a time</startTime>
+                  <Parties>
+                    <Party role="caller"><number>2075550101</number></Party>
+                    <Party role="callee"><number>2075550102</number></Party>
+                  </Parties>
+                </Media>
+              </Objects>
+            </Root>
+            """;
+
+    private static final String SINGLE_XML = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <Media Type="Audio" FileName="200001.wav">
+              <objectID>800001</objectID>
+              <startTime>6/1/2021 9:15:00 AM</startTime>
+              <channelNum>3</channelNum>
+              <Agent id="7"><name>Bob</name><name>Al</name></Agent>
+              <tag>a</tag>
+              <other>x</other>
+              <tag>b</tag>
+              <Note lang="en">hi</Note>
+              <Call>
+                <Party role="caller"><number>2075550101</number></Party>
+                <Party role="callee"><number>2075550102</number><name/></Party>
+              </Call>
+              <empty/>
+            </Media>
+            """;
+
+    private final VpiMediaParser parser = new VpiMediaParser();
+
+    @Test
+    void cmpMatchesTreeParsing() throws Exception {
+        byte[] xml = CMP_XML.getBytes(StandardCharsets.UTF_8);
+        assertEquals(treeCmp(xml), toMaps(parser.parse("CMP", xml)));
+    }
+
+    @Test
+    void rgeMatchesTreeParsing() throws Exception {
+        byte[] xml = SINGLE_XML.getBytes(StandardCharsets.UTF_8);
+        assertEquals(treeSingle(xml), toMaps(parser.parse("RGE", xml)));
+    }
+
+    @Test
+    void nysegMatchesTreeParsing() throws Exception {
+        byte[] xml = SINGLE_XML.getBytes(StandardCharsets.UTF_8);
+        assertEquals(treeSingle(xml), toMaps(parser.parse("NYSEG", xml)));
+    }
+
+    @Test
+    void startTimeIsParsed() throws Exception {
+        List<MetadataRecord> records = parser.parse("CMP", CMP_XML.getBytes(StandardCharsets.UTF_8));
+        assertEquals(VpiMediaParser.parseStartTime("5/10/2018 4:01:07 PM"), records.get(0).getStartEpochSecond());
+        assertEquals(MetadataRecord.NO_START_TIME, records.get(1).getStartEpochSecond());
+    }
+
+    private static List<Map<String, Object>> toMaps(List<MetadataRecord> records) {
+        List<Map<String, Object>> maps = new ArrayList<>();
+        for (MetadataRecord record : records) {
+            maps.add(record.toMap());
+        }
+        return maps;
+    }
+
+    private static List<Map<String, Object>> treeCmp(byte[] xmlData) throws Exception {
+        List<Map<String, Object>> metadataList = new ArrayList<>();
+        JsonNode mediaNodes = new XmlMapper().readTree(xmlData).path("Objects").path("Media");
+        List<JsonNode> medias = new ArrayList<>();
+        if (mediaNodes.isArray()) {
+            mediaNodes.forEach(medias::add);
+        } else if (mediaNodes.isObject()) {
+            medias.add(mediaNodes);
+        }
+        for (JsonNode media : medias) {
+            Map<String, Object> mediaData = new HashMap<>();
+            media.fields().forEachRemaining(entry -> mediaData.put(entry.getKey(),
+                    entry.getValue().isValueNode() ? entry.getValue().asText() : entry.getValue().toString()));
+            media.fields().forEachRemaining(entry -> {
+                JsonNode node = entry.getValue();
+                if (node.isObject() && node.has("@Type")) {
+                    node.fields().forEachRemaining(attr -> {
+                        if (attr.getKey().startsWith("@")) {
+                            mediaData.put(attr.getKey().substring(1), attr.getValue().asText());
+                        }
+                    });
+                }
+            });
+            metadataList.add(mediaData);
+        }
+        return metadataList;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> treeSingle(byte[] xmlData) throws Exception {
+        JsonNode mediaNode = new XmlMapper().readTree(xmlData);
+        return List.of(new ObjectMapper().convertValue(mediaNode, Map.class));
+    }
+}
@@ -0,0 +1,65 @@
+package com.avangrid.gui.avangrid_backend.service;
+
+import com.avangrid.gui.avangrid_backend.exception.InvalidRequestException;
+import com.avangrid.gui.avangrid_backend.model.Recording;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class VpiRecordingServiceTokenTest {
+
+    @Test
+    void tokenRoundTrips() {
+        Recording decoded = roundTrip(LocalDateTime.of(2024, 3, 7, 14, 5, 9), "call_0001.wav");
+        assertEquals(LocalDateTime.of(2024, 3, 7, 14, 5, 9), decoded.getDateAdded());
+        assertEquals("call_0001.wav", decoded.getFileName());
+    }
+
+    @Test
+    void fileNameMayContainSeparator() {
+        Recording decoded = roundTrip(LocalDateTime.of(2024, 3, 7, 0, 0), "a|b|c.wav");
+        assertEquals(LocalDateTime.of(2024, 3, 7, 0, 0), decoded.getDateAdded());
+        assertEquals("a|b|c.wav", decoded.getFileName());
+    }
+
+    @Test
+    void fractionalSecondsSurvive() {
+        LocalDateTime dateAdded = LocalDateTime.of(2024, 3, 7, 14, 5, 9, 123_000_000);
+        assertEquals(dateAdded, roundTrip(dateAdded, "x.wav").getDateAdded());
+    }
+
+    @Test
+    void tokenIsUrlSafe() {
+        String token = VpiRecordingService.encodeContinuationToken(recording(LocalDateTime.of(2024, 1, 1, 0, 0), "??>>.wav"));
+        assertFalse(token.contains("+") || token.contains("/") || token.contains("="), token);
+    }
+
+    @Test
+    void invalidTokensAreRejected() {
+        assertThrows(InvalidRequestException.class, () -> VpiRecordingService.decodeContinuationToken("not base64!"));
+        assertThrows(InvalidRequestException.class, () -> VpiRecordingService.decodeContinuationToken(encode("no separator")));
+        assertThrows(InvalidRequestException.class, () -> VpiRecordingService.decodeContinuationToken(encode("yesterday|x.wav")));
+    }
+
+    private static Recording roundTrip(LocalDateTime dateAdded, String fileName) {
+        return VpiRecordingService.decodeContinuationToken(
+                VpiRecordingService.encodeContinuationToken(recording(dateAdded, fileName)));
+    }
+
+    private static Recording recording(LocalDateTime dateAdded, String fileName) {
+        Recording recording = new Recording();
+        recording.setDateAdded(dateAdded);
+        recording.setFileName(fileName);
+        return recording;
+    }
+
+    private static String encode(String position) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+}